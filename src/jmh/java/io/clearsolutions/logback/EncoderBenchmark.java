@@ -0,0 +1,99 @@
+package io.clearsolutions.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.JsonEncoder;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.encoder.Encoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.event.KeyValuePair;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of encoding one event with {@link CloudWatchJsonEncoder}, logback's own {@link JsonEncoder} and a
+ * plain {@link PatternLayoutEncoder}. Run with {@code -prof gc} to see the allocation per event as well.
+ * <p>
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="EncoderBenchmark -prof gc"}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncoderBenchmark {
+
+    @Param({"CloudWatchJsonEncoder", "JsonEncoder", "PatternLayoutEncoder"})
+    public String encoderType;
+
+    @Param({"plain", "context", "exception"})
+    public String eventType;
+
+    private Encoder<ILoggingEvent> encoder;
+    private ILoggingEvent event;
+
+    @Setup
+    public void setUp() {
+        var loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        encoder = createEncoder(loggerContext);
+        encoder.start();
+
+        Logger logger = loggerContext.getLogger("io.clearsolutions.benchmark.OrderService");
+        Throwable throwable = "exception".equals(eventType)
+                              ? new IllegalStateException("Order 42 is already shipped", new RuntimeException("cause"))
+                              : null;
+        var loggingEvent = new LoggingEvent(Logger.class.getName(),
+                                            logger,
+                                            Level.INFO,
+                                            "Processed order {} for customer {}",
+                                            throwable,
+                                            new Object[] {42, "Zo\u00eb"});
+        if ("context".equals(eventType)) {
+            loggingEvent.setMDCPropertyMap(Map.of("requestId", "7f3c9a2e-1b4d", "tenant", "acme"));
+            loggingEvent.addKeyValuePair(new KeyValuePair("durationMillis", 187));
+            loggingEvent.addKeyValuePair(new KeyValuePair("status", "SHIPPED"));
+        }
+        loggingEvent.prepareForDeferredProcessing();
+        event = loggingEvent;
+    }
+
+    private Encoder<ILoggingEvent> createEncoder(LoggerContext loggerContext) {
+        switch (encoderType) {
+            case "JsonEncoder":
+                var jsonEncoder = new JsonEncoder();
+                jsonEncoder.setContext(loggerContext);
+                return jsonEncoder;
+            case "PatternLayoutEncoder":
+                var patternLayoutEncoder = new PatternLayoutEncoder();
+                patternLayoutEncoder.setContext(loggerContext);
+                patternLayoutEncoder.setPattern("%d{ISO8601} %-5level [%thread] %logger - %msg %mdc %kvp%n%ex");
+                return patternLayoutEncoder;
+            default:
+                var cloudWatchJsonEncoder = new CloudWatchJsonEncoder();
+                cloudWatchJsonEncoder.setContext(loggerContext);
+                return cloudWatchJsonEncoder;
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return encoder.encode(event);
+    }
+}
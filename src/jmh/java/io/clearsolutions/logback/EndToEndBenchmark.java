@@ -0,0 +1,169 @@
+package io.clearsolutions.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import io.clearsolutions.logback.fake.FakeCloudWatchLogsServer;
+import io.clearsolutions.logback.metrics.AppenderMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+/**
+ * Runs the whole appender, queue, worker, writer and SDK client, against {@link FakeCloudWatchLogsServer}.
+ * <p>
+ * The benchmark itself measures {@code append()} as seen by the logging threads: sample mode reports the latency
+ * percentiles, {@code -bm thrpt} the rate the threads can log at, and {@code -prof gc} the allocation per event. After
+ * every iteration the rate of events acknowledged by the fake endpoint and the share of events dropped because the
+ * queue was full are printed, which is what to compare across queue sizes and fault settings:
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="EndToEndBenchmark -prof gc"
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="EndToEndBenchmark -t 32 -p queueCapacity=1000 -p throttleRate=0.2"
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="EndToEndBenchmark -p gzipCompression=false,true -p queueCapacity=10000"
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="EndToEndBenchmark -t 32 -p workerThreads=1,2,4 -p queueCapacity=100000"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(8)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int queueCapacity;
+
+    @Param({"false", "true"})
+    public boolean asyncShipping;
+
+    @Param("20")
+    public long latencyMillis;
+
+    @Param("0")
+    public double throttleRate;
+
+    @Param("0")
+    public double errorRate;
+
+    @Param("0")
+    public int maxRequestsPerSecond;
+
+    @Param("false")
+    public boolean gzipCompression;
+
+    @Param("1")
+    public int workerThreads;
+
+    private FakeCloudWatchLogsServer server;
+    private CloudWatchAppender appender;
+    private ILoggingEvent event;
+
+    private long iterationStart;
+    private long eventsAtStart;
+    private long bytesAtStart;
+    private long enqueuedAtStart;
+    private long discardedAtStart;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = FakeCloudWatchLogsServer.start();
+        server.setLatencyMillis(latencyMillis);
+        server.setThrottleRate(throttleRate);
+        server.setErrorRate(errorRate);
+        server.setMaxRequestsPerSecond(maxRequestsPerSecond);
+
+        var loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+
+        var encoder = new CloudWatchJsonEncoder();
+        encoder.setContext(loggerContext);
+        encoder.start();
+
+        appender = new CloudWatchAppender();
+        appender.setContext(loggerContext);
+        appender.setName("benchmark");
+        appender.setEncoder(encoder);
+        appender.setLogGroupName("benchmark");
+        appender.setLogStreamName("benchmark");
+        appender.setLogRegion("us-east-1");
+        appender.setCloudWatchEndpoint(server.getEndpoint());
+        appender.setAccessKeyId("benchmark");
+        appender.setSecretAccessKey("benchmark");
+        appender.setQueueCapacity(queueCapacity);
+        appender.setAsyncShipping(asyncShipping);
+        appender.setGzipCompression(gzipCompression);
+        appender.setWorkerThreads(workerThreads);
+        appender.setJmxEnabled(false);
+        appender.start();
+
+        Logger logger = loggerContext.getLogger("io.clearsolutions.benchmark.OrderService");
+        var loggingEvent = new LoggingEvent(Logger.class.getName(),
+                                            logger,
+                                            Level.INFO,
+                                            "Processed order {} for customer {}",
+                                            null,
+                                            new Object[] {42, "acme"});
+        loggingEvent.prepareForDeferredProcessing();
+        event = loggingEvent;
+    }
+
+    @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+    public void startIteration() {
+        AppenderMetrics metrics = appender.getMetrics();
+        iterationStart = System.nanoTime();
+        eventsAtStart = server.getEvents();
+        bytesAtStart = server.getBytes();
+        enqueuedAtStart = metrics.getEnqueuedEvents();
+        discardedAtStart = metrics.getDiscardedEvents();
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+    public void reportIteration() {
+        AppenderMetrics metrics = appender.getMetrics();
+        double seconds = (System.nanoTime() - iterationStart) / 1e9;
+        long delivered = server.getEvents() - eventsAtStart;
+        long enqueued = metrics.getEnqueuedEvents() - enqueuedAtStart;
+        long discarded = metrics.getDiscardedEvents() - discardedAtStart;
+        long bytes = server.getBytes() - bytesAtStart;
+        System.out.println(format("%n  delivered %.0f events/s, %.1f bytes/event on the wire,"
+                                  + " dropped %.2f%% of %d appended, %d requests, %d throttled, %d failed",
+                                  delivered / seconds,
+                                  (double) bytes / Math.max(delivered, 1),
+                                  100.0 * discarded / Math.max(enqueued + discarded, 1),
+                                  enqueued + discarded,
+                                  server.getRequests(),
+                                  server.getThrottled(),
+                                  server.getFailed()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        appender.stop();
+        server.close();
+    }
+
+    @Benchmark
+    public void append() {
+        appender.doAppend(event);
+    }
+}
@@ -0,0 +1,82 @@
+package io.clearsolutions.logback;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link TimestampSorter} with the {@code List.sort} by timestamp it replaced, on a batch that arrives in
+ * order, one with a share of late events, as several logging threads produce, and one in random order.
+ * <p>
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="TimestampSorterBenchmark"}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimestampSorterBenchmark {
+
+    private static final byte[] MESSAGE = new byte[100];
+
+    @Param({"10000"})
+    public int batchSize;
+
+    @Param({"sorted", "stragglers", "random"})
+    public String order;
+
+    private final TimestampSorter sorter = new TimestampSorter();
+    private List<LogEventDTO> events;
+    private List<LogEventDTO> buffer;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        now = System.currentTimeMillis();
+        events = new ArrayList<>(batchSize);
+        long timestamp = now - batchSize;
+        for (int i = 0; i < batchSize; i++) {
+            long eventTimestamp = timestamp++;
+            if ("stragglers".equals(order) && random.nextInt(20) == 0) {
+                eventTimestamp -= random.nextInt(50);
+            } else if ("random".equals(order)) {
+                eventTimestamp = now - random.nextInt(batchSize);
+            }
+            events.add(new LogEventDTO(MESSAGE, eventTimestamp));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        buffer = new ArrayList<>(events);
+    }
+
+    @Benchmark
+    public List<LogEventDTO> listSort() {
+        buffer.sort(Comparator.comparingLong(LogEventDTO::getTimestamp));
+        return buffer;
+    }
+
+    @Benchmark
+    public List<LogEventDTO> timestampSorter() {
+        sorter.sort(buffer, now);
+        return buffer;
+    }
+}
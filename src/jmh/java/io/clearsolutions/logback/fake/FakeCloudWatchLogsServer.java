@@ -0,0 +1,246 @@
+package io.clearsolutions.logback.fake;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process stand-in for the CloudWatch Logs API, reachable through the {@code cloudWatchEndpoint} override. It
+ * speaks the AWS JSON 1.1 protocol well enough for the SDK: PutLogEvents is counted and acknowledged, CreateLogGroup,
+ * CreateLogStream and PutRetentionPolicy always succeed.
+ * <p>
+ * Faults can be injected while it runs: a fixed latency per request, a share of PutLogEvents calls answered with
+ * {@code ThrottlingException} or {@code ServiceUnavailableException}, and a request rate above which every call is
+ * throttled, like a real account quota.
+ * <p>
+ * Gzip-compressed bodies are decoded, or rejected with {@code SerializationException} like an endpoint that does not
+ * support {@code Content-Encoding}, see {@link #setAcceptGzip(boolean)}. {@link #getBytes()} counts the bytes on the
+ * wire.
+ */
+public class FakeCloudWatchLogsServer implements AutoCloseable {
+
+    private static final String PUT_LOG_EVENTS = "Logs_20140328.PutLogEvents";
+    private static final byte[] TIMESTAMP_FIELD = "\"timestamp\"".getBytes(StandardCharsets.US_ASCII);
+    private static final int HANDLER_THREADS = 64;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile long latencyMillis;
+    private volatile double throttleRate;
+    private volatile double errorRate;
+    private volatile int maxRequestsPerSecond;
+    private volatile boolean acceptGzip = true;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejectedGzip = new LongAdder();
+    private final AtomicLong sequenceToken = new AtomicLong();
+
+    private long currentSecond;
+    private int requestsInSecond;
+
+    private FakeCloudWatchLogsServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    public static FakeCloudWatchLogsServer start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(HANDLER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "FakeCloudWatchLogs");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var fake = new FakeCloudWatchLogsServer(server, executor);
+        server.createContext("/", fake::handle);
+        server.setExecutor(executor);
+        server.start();
+        return fake;
+    }
+
+    public String getEndpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = readBody(exchange);
+            boolean gzip = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            if (gzip && ! acceptGzip) {
+                rejectedGzip.increment();
+                respondError(exchange, 400, "SerializationException", "Unexpected character");
+                return;
+            }
+            if (! PUT_LOG_EVENTS.equals(exchange.getRequestHeaders().getFirst("X-Amz-Target"))) {
+                respond(exchange, 200, "{}");
+                return;
+            }
+            requests.increment();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (overQuota() || random.nextDouble() < throttleRate) {
+                throttled.increment();
+                respondError(exchange, 400, "ThrottlingException", "Rate exceeded");
+                return;
+            }
+            if (random.nextDouble() < errorRate) {
+                failed.increment();
+                respondError(exchange, 503, "ServiceUnavailableException", "The service is unavailable");
+                return;
+            }
+            events.add(countEvents(gzip ? gunzip(body) : body));
+            bytes.add(body.length);
+            respond(exchange, 200, "{\"nextSequenceToken\":\"" + sequenceToken.incrementAndGet() + "\"}");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            return body.readAllBytes();
+        }
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private synchronized boolean overQuota() {
+        if (maxRequestsPerSecond <= 0) {
+            return false;
+        }
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        if (second != currentSecond) {
+            currentSecond = second;
+            requestsInSecond = 0;
+        }
+        return ++requestsInSecond > maxRequestsPerSecond;
+    }
+
+    /**
+     * Counts the {@code "timestamp"} fields of the request, one per log event. The same text inside a message is
+     * escaped, so it never matches.
+     */
+    private static int countEvents(byte[] body) {
+        int count = 0;
+        for (int i = 1; i + TIMESTAMP_FIELD.length <= body.length; i++) {
+            if (body[i] == '"' && body[i - 1] != '\\' && matchesAt(body, i)) {
+                count++;
+                i += TIMESTAMP_FIELD.length - 1;
+            }
+        }
+        return count;
+    }
+
+    private static boolean matchesAt(byte[] body, int offset) {
+        for (int i = 0; i < TIMESTAMP_FIELD.length; i++) {
+            if (body[offset + i] != TIMESTAMP_FIELD[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void respondError(HttpExchange exchange, int status, String type, String message)
+        throws IOException {
+        exchange.getResponseHeaders().add("x-amzn-ErrorType", type);
+        respond(exchange, status, "{\"__type\":\"" + type + "\",\"message\":\"" + message + "\"}");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] response = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/x-amz-json-1.1");
+        exchange.getResponseHeaders().add("x-amzn-RequestId", Long.toString(System.nanoTime()));
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Share of PutLogEvents calls, from 0 to 1, answered with {@code ThrottlingException}.
+     */
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+    }
+
+    /**
+     * Share of PutLogEvents calls, from 0 to 1, answered with {@code ServiceUnavailableException}.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * PutLogEvents calls above this rate are throttled, 0 means no limit.
+     */
+    public void setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * When off, every gzip-compressed request is answered with {@code SerializationException}.
+     */
+    public void setAcceptGzip(boolean acceptGzip) {
+        this.acceptGzip = acceptGzip;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getEvents() {
+        return events.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getRejectedGzip() {
+        return rejectedGzip.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,164 @@
+package io.clearsolutions.logback.queue;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ingestion queue of the appender with the {@link ArrayBlockingQueue} it replaced: 1, 8 and 64 threads
+ * offer events while a single consumer drains them in batches, the same way the worker does.
+ * <p>
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="QueueContentionBenchmark"}
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueContentionBenchmark {
+
+    private static final Object EVENT = new Object();
+    private static final int DRAIN_SIZE = 1000;
+
+    @Param({"ArrayBlockingQueue", "RingBufferQueue"})
+    public String queue;
+
+    @Param("10000")
+    public int capacity;
+
+    private Ingestion ingestion;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        if ("ArrayBlockingQueue".equals(queue)) {
+            var blockingQueue = new ArrayBlockingQueue<Object>(capacity);
+            ingestion = new Ingestion() {
+                @Override
+                public boolean offer(Object event) {
+                    return blockingQueue.offer(event);
+                }
+
+                @Override
+                public int drain(List<Object> target) {
+                    return blockingQueue.drainTo(target, DRAIN_SIZE);
+                }
+            };
+        } else {
+            var ringBufferQueue = new RingBufferQueue<Object>(capacity);
+            ingestion = new Ingestion() {
+                @Override
+                public boolean offer(Object event) {
+                    return ringBufferQueue.offer(event);
+                }
+
+                @Override
+                public int drain(List<Object> target) {
+                    return ringBufferQueue.drainTo(target, DRAIN_SIZE);
+                }
+            };
+        }
+    }
+
+    @Benchmark
+    @Group("producers1")
+    @GroupThreads(1)
+    public boolean offer1(OfferCounters counters) {
+        return offer(counters);
+    }
+
+    @Benchmark
+    @Group("producers1")
+    @GroupThreads(1)
+    public int drain1(Consumer consumer) {
+        return consumer.drain(ingestion);
+    }
+
+    @Benchmark
+    @Group("producers8")
+    @GroupThreads(8)
+    public boolean offer8(OfferCounters counters) {
+        return offer(counters);
+    }
+
+    @Benchmark
+    @Group("producers8")
+    @GroupThreads(1)
+    public int drain8(Consumer consumer) {
+        return consumer.drain(ingestion);
+    }
+
+    @Benchmark
+    @Group("producers64")
+    @GroupThreads(64)
+    public boolean offer64(OfferCounters counters) {
+        return offer(counters);
+    }
+
+    @Benchmark
+    @Group("producers64")
+    @GroupThreads(1)
+    public int drain64(Consumer consumer) {
+        return consumer.drain(ingestion);
+    }
+
+    private boolean offer(OfferCounters counters) {
+        boolean offered = ingestion.offer(EVENT);
+        if (offered) {
+            counters.accepted++;
+        } else {
+            counters.rejected++;
+        }
+        return offered;
+    }
+
+    private interface Ingestion {
+
+        boolean offer(Object event);
+
+        int drain(List<Object> target);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class OfferCounters {
+
+        public long accepted;
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            accepted = 0;
+            rejected = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Consumer {
+
+        private final List<Object> buffer = new ArrayList<>(DRAIN_SIZE);
+
+        int drain(Ingestion ingestion) {
+            int drained = ingestion.drain(buffer);
+            buffer.clear();
+            return drained;
+        }
+    }
+}
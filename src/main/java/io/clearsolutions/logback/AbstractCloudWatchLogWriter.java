@@ -0,0 +1,263 @@
+package io.clearsolutions.logback;
+
+import io.clearsolutions.logback.configuration.CloudWatchConfiguration;
+import io.clearsolutions.logback.metrics.AppenderMetrics;
+import io.clearsolutions.logback.retry.FailureType;
+import io.clearsolutions.logback.retry.RetryEngine;
+import io.clearsolutions.logback.spool.DiskSpool;
+import io.clearsolutions.logback.transport.GzipRequestCompression;
+import io.clearsolutions.logback.util.Utf8Util;
+import software.amazon.awssdk.services.cloudwatchlogs.model.CreateLogGroupRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.CreateLogStreamRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.InputLogEvent;
+import software.amazon.awssdk.services.cloudwatchlogs.model.InvalidSequenceTokenException;
+import software.amazon.awssdk.services.cloudwatchlogs.model.PutLogEventsRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.PutRetentionPolicyRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.ResourceAlreadyExistsException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static java.lang.String.format;
+import static java.util.Objects.nonNull;
+
+/**
+ * Request building and log group/stream initialization shared by the blocking and the asynchronous writers.
+ */
+public abstract class AbstractCloudWatchLogWriter implements LogWriter {
+
+    static final int MAX_MESSAGE_SIZE = 256 * 1024;
+    private static final String THREE_DOTS = "...";
+    private static final int PADDING = 42;//because this is answer to everything
+    private static final int MAX_CUT_SIZE = MAX_MESSAGE_SIZE - PADDING - THREE_DOTS.length();
+    protected static final long GIVE_UP = -1;
+
+    protected final CloudWatchConfiguration configuration;
+    protected final List<LogDestination> destinations;
+    protected final AppenderMetrics metrics;
+    protected final RetryEngine retryEngine;
+    private final DiskSpool spool;
+    private final GzipRequestCompression requestCompression;
+
+    protected AbstractCloudWatchLogWriter(CloudWatchConfiguration configuration,
+                                          CloudWatchClientFactory clientFactory,
+                                          List<LogDestination> destinations,
+                                          DiskSpool spool,
+                                          AppenderMetrics metrics,
+                                          RetryEngine retryEngine) {
+        this.configuration = configuration;
+        this.destinations = destinations;
+        this.spool = spool;
+        this.metrics = metrics;
+        this.retryEngine = retryEngine;
+        this.requestCompression = clientFactory.getRequestCompression();
+    }
+
+    protected abstract void createLogGroup(CreateLogGroupRequest request);
+
+    protected abstract void putRetentionPolicy(PutRetentionPolicyRequest request);
+
+    protected abstract void createLogStream(CreateLogStreamRequest request);
+
+    protected void onWriteSucceeded() {
+        retryEngine.onSuccess();
+        if (nonNull(spool)) {
+            spool.onWriteSucceeded();
+        }
+    }
+
+    /**
+     * Keeps a batch CloudWatch did not accept in the spool, if one is configured, so it is replayed later instead of
+     * being lost.
+     */
+    protected WriteOutcome onWriteFailed(List<LogEventDTO> logs) {
+        if (nonNull(spool)) {
+            spool.onWriteFailed();
+            spool.append(logs);
+            metrics.eventsSpooled(logs.size());
+            return WriteOutcome.SPOOLED;
+        }
+        metrics.eventsDiscarded(logs.size());
+        return WriteOutcome.DISCARDED;
+    }
+
+    /**
+     * Decides what happens to a batch after a failed attempt. Fatal failures discard the batch, retryable ones are
+     * retried after a backoff until the batch runs out of retries or time, and then it is handed to
+     * {@link #onWriteFailed(List)}.
+     *
+     * @param retry  the number of the retry that would follow, starting with 1
+     * @param result completed with the outcome of the batch if it is done with
+     * @return the delay in nanoseconds before the next attempt, or {@link #GIVE_UP} if the batch is done with
+     */
+    protected long onAttemptFailed(LogDestination destination,
+                                   List<LogEventDTO> logs,
+                                   Throwable error,
+                                   int retry,
+                                   long deadlineNanos,
+                                   CompletableFuture<WriteOutcome> result) {
+        if (nonNull(requestCompression) && requestCompression.fallBackIfRejected(error)) {
+            // the endpoint cannot read gzip, the batch itself is fine
+            metrics.retry();
+            return 0;
+        }
+        FailureType type = retryEngine.classify(error);
+        switch (type) {
+            case ALREADY_ACCEPTED:
+                onWriteSucceeded();
+                result.complete(WriteOutcome.SENT);
+                return GIVE_UP;
+            case FATAL:
+                System.err.println(format("Failed to write %d log events to %s, discarding them.",
+                                          logs.size(), destination));
+                error.printStackTrace();
+                metrics.eventsDiscarded(logs.size());
+                result.complete(WriteOutcome.DISCARDED);
+                return GIVE_UP;
+            case THROTTLED:
+                metrics.throttled();
+                retryEngine.onThrottled();
+                break;
+            case INVALID_SEQUENCE_TOKEN:
+                onInvalidSequenceToken(destination, (InvalidSequenceTokenException) error);
+                break;
+            case RESOURCE_NOT_FOUND:
+                if (initLogGroup(destination.getLogGroupName())) {
+                    initLogStream(destination);
+                }
+                break;
+            default:
+                break;
+        }
+
+        long delayNanos = retryEngine.retryDelayNanos(type, retry, deadlineNanos);
+        if (delayNanos < 0) {
+            System.err.println(format("Failed to write %d log events to %s after %d attempts: %s",
+                                      logs.size(), destination, retry, error.getMessage()));
+            result.complete(onWriteFailed(logs));
+            return GIVE_UP;
+        }
+        metrics.retry();
+        return delayNanos;
+    }
+
+    protected void onInvalidSequenceToken(LogDestination destination, InvalidSequenceTokenException error) {
+    }
+
+    protected PutLogEventsRequest putLogEventsRequest(LogDestination destination,
+                                                      List<LogEventDTO> logs,
+                                                      String sequenceToken) {
+        var request = PutLogEventsRequest.builder()
+                                         .logGroupName(destination.getLogGroupName())
+                                         .logStreamName(destination.getLogStreamName())
+                                         .logEvents(logs.stream()
+                                                        .map(log -> {
+                                                            String message = ensureNotLargerThan256KB(log.getMessage());
+                                                            return InputLogEvent.builder()
+                                                                                .message(message)
+                                                                                .timestamp(log.getTimestamp())
+                                                                                .build();
+                                                        })
+                                                        .collect(Collectors.toList()));
+
+        // Add the sequenceToken if it is not null
+        if (nonNull(sequenceToken)) {
+            request = request.sequenceToken(sequenceToken);
+        }
+        return request.build();
+    }
+
+    /**
+     * Decodes a UTF-8 message and, if it is larger than 256 KB, cuts it to fit within this size. The size check and the
+     * cut work on the encoded bytes and never split a multi-byte character, so the message is decoded exactly once.
+     *
+     * @param input The UTF-8 encoded message to check and possibly cut.
+     * @return A string that is guaranteed to be less than or equal to 256 KB in UTF-8 byte size.
+     * @see <a href="https://docs.aws.amazon.com/AmazonCloudWatchLogs/latest/APIReference/API_InputLogEvent.html">InputLogEvent</a>
+     */
+    public static String ensureNotLargerThan256KB(byte[] input) {
+        if (input.length <= MAX_MESSAGE_SIZE) {
+            return new String(input, StandardCharsets.UTF_8);
+        }
+
+        int cutSize = Utf8Util.safeCutLength(input, MAX_CUT_SIZE);
+        return new String(input, 0, cutSize, StandardCharsets.UTF_8) + THREE_DOTS;
+    }
+
+    @Override
+    public List<LogDestination> getDestinations() {
+        return destinations;
+    }
+
+    /**
+     * Creates the log groups and streams up front unless {@code createResources} is off. Either way a group or stream
+     * that turns out to be missing is created when a write reports it.
+     */
+    protected void initCloudWatchLogGroup() {
+        if (! configuration.isCreateResources()) {
+            return;
+        }
+        var logGroupNames = new LinkedHashSet<String>();
+        destinations.forEach(destination -> logGroupNames.add(destination.getLogGroupName()));
+        // the streams of a group that could not be created would fail the same way
+        logGroupNames.removeIf(logGroupName -> ! initLogGroup(logGroupName));
+        destinations.stream()
+                    .filter(destination -> logGroupNames.contains(destination.getLogGroupName()))
+                    .forEach(this::initLogStream);
+    }
+
+    private boolean initLogGroup(String logGroupName) {
+        // only a group created here gets the retention, an existing one keeps whatever it was given
+        return request(format("create log group %s", logGroupName), () -> {
+            createLogGroup(CreateLogGroupRequest.builder()
+                                                .logGroupName(logGroupName)
+                                                .build());
+            if (configuration.getRetentionTimeInDays() > 0) {
+                request(format("set the retention of log group %s", logGroupName),
+                        () -> putRetentionPolicy(retentionPolicyRequest(logGroupName)));
+            }
+        });
+    }
+
+    private PutRetentionPolicyRequest retentionPolicyRequest(String logGroupName) {
+        return PutRetentionPolicyRequest.builder()
+                                        .logGroupName(logGroupName)
+                                        .retentionInDays(configuration.getRetentionTimeInDays())
+                                        .build();
+    }
+
+    private void initLogStream(LogDestination destination) {
+        request(format("create log stream %s", destination),
+                () -> createLogStream(CreateLogStreamRequest.builder()
+                                                            .logGroupName(destination.getLogGroupName())
+                                                            .logStreamName(destination.getLogStreamName())
+                                                            .build()));
+    }
+
+    /**
+     * Sends a request that creates or configures a resource and counts it like any other request. A resource that
+     * exists already counts as created: trying to create it takes one request and no extra permission, while looking
+     * it up first takes two and could still race with another instance creating it. A failure is reported and left
+     * to the writes, which create a missing group or stream again when CloudWatch reports it.
+     *
+     * @return {@code true} if the resource is there now
+     */
+    private boolean request(String description, Runnable call) {
+        long startNanos = metrics.requestStarted();
+        try {
+            call.run();
+            metrics.requestCompleted(startNanos, true);
+            return true;
+        } catch (ResourceAlreadyExistsException e) {
+            metrics.requestCompleted(startNanos, true);
+            return true;
+        } catch (RuntimeException e) {
+            metrics.requestCompleted(startNanos, false);
+            System.err.println(format("Failed to %s: %s", description, e.getMessage()));
+            return false;
+        }
+    }
+}
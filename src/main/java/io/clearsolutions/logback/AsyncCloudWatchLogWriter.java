@@ -0,0 +1,227 @@
+package io.clearsolutions.logback;
+
+import io.clearsolutions.logback.configuration.CloudWatchConfiguration;
+import io.clearsolutions.logback.configuration.ShippingConfiguration;
+import io.clearsolutions.logback.metrics.AppenderMetrics;
+import io.clearsolutions.logback.retry.RetryEngine;
+import io.clearsolutions.logback.spool.DiskSpool;
+import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsAsyncClient;
+import software.amazon.awssdk.services.cloudwatchlogs.model.CreateLogGroupRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.CreateLogStreamRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.PutRetentionPolicyRequest;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static java.util.Objects.nonNull;
+
+/**
+ * Pipelines PutLogEvents calls over the asynchronous client. Up to {@code maxInFlightRequests} batches are on the wire
+ * at the same time, completions are handled on the SDK's completion executor, and {@link #write} blocks the
+ * worker only when the in-flight limit is reached.
+ * <p>
+ * Requests are sent without a sequence token: CloudWatch Logs no longer validates it, which is what allows several
+ * requests to the same stream to be in flight at once. Retries are scheduled off the worker thread and keep their
+ * in-flight slot, so a throttled endpoint slows the worker down instead of piling up requests.
+ */
+public class AsyncCloudWatchLogWriter extends AbstractCloudWatchLogWriter {
+
+    private final CloudWatchLogsAsyncClient cloudWatchLogsClient;
+    private final int maxInFlightRequests;
+    private final Semaphore inFlightRequests;
+    private final ScheduledExecutorService retryScheduler;
+    // the scheduler hands back its own task wrappers on shutdownNow(), so the batches of pending retries are kept here
+    private final Set<Retry> pendingRetries = ConcurrentHashMap.newKeySet();
+
+    public AsyncCloudWatchLogWriter(CloudWatchConfiguration cloudWatchConfiguration,
+                                    CloudWatchClientFactory clientFactory,
+                                    List<LogDestination> destinations,
+                                    ShippingConfiguration shippingConfiguration,
+                                    DiskSpool spool,
+                                    AppenderMetrics metrics,
+                                    RetryEngine retryEngine) {
+        super(cloudWatchConfiguration, clientFactory, destinations, spool, metrics, retryEngine);
+        this.cloudWatchLogsClient = clientFactory.buildAsyncClient();
+        this.maxInFlightRequests = shippingConfiguration.getMaxInFlightRequests();
+        this.inFlightRequests = new Semaphore(maxInFlightRequests);
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CloudWatchAppender-Retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        initCloudWatchLogGroup();
+    }
+
+    @Override
+    public CompletableFuture<WriteOutcome> write(LogDestination destination, List<LogEventDTO> logs) {
+        var result = new CompletableFuture<WriteOutcome>();
+        try {
+            inFlightRequests.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while waiting for in-flight requests, "
+                               + logs.size() + " log events are not sent.");
+            result.complete(onWriteFailed(logs));
+            return result;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(retryEngine.reserveSendSlot());
+        } catch (InterruptedException e) {
+            // still send the batch, the worker finds the interrupt flag and stops after it
+            Thread.currentThread().interrupt();
+        }
+        send(destination, logs, 0, retryEngine.deadlineNanos(), result);
+        return result;
+    }
+
+    private void send(LogDestination destination,
+                      List<LogEventDTO> logs,
+                      int retry,
+                      long deadlineNanos,
+                      CompletableFuture<WriteOutcome> result) {
+        long start = metrics.requestStarted();
+        try {
+            cloudWatchLogsClient.putLogEvents(putLogEventsRequest(destination, logs, null))
+                                .whenComplete((response, error) -> {
+                                    metrics.requestCompleted(start, error == null);
+                                    if (nonNull(error)) {
+                                        retryLater(destination, logs, unwrap(error), retry + 1, deadlineNanos,
+                                                   result);
+                                    } else {
+                                        inFlightRequests.release();
+                                        onWriteSucceeded();
+                                        result.complete(WriteOutcome.SENT);
+                                    }
+                                });
+        } catch (Exception e) {
+            metrics.requestCompleted(start, false);
+            retryLater(destination, logs, e, retry + 1, deadlineNanos, result);
+        }
+    }
+
+    private void retryLater(LogDestination destination,
+                            List<LogEventDTO> logs,
+                            Throwable error,
+                            int retry,
+                            long deadlineNanos,
+                            CompletableFuture<WriteOutcome> result) {
+        long delayNanos = onAttemptFailed(destination, logs, error, retry, deadlineNanos, result);
+        if (delayNanos == GIVE_UP) {
+            inFlightRequests.release();
+            return;
+        }
+        var pendingRetry = new Retry(destination, logs, retry, deadlineNanos, result);
+        pendingRetries.add(pendingRetry);
+        try {
+            retryScheduler.schedule(pendingRetry,
+                                    Math.max(delayNanos, retryEngine.reserveSendSlot()),
+                                    TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // the writer is closed, keep the batch in the spool if there is one
+            pendingRetry.abandon();
+        }
+    }
+
+    /**
+     * Taking every permit means no request is in flight and no retry is pending. Batches that are still out when the
+     * deadline passes are spooled or discarded: those waiting for a retry right away, those on the wire once the client
+     * is closed underneath them.
+     */
+    @Override
+    public void close(long deadlineNanos) {
+        try {
+            long remaining = Math.max(deadlineNanos - System.nanoTime(), 0);
+            if (! inFlightRequests.tryAcquire(maxInFlightRequests, remaining, TimeUnit.NANOSECONDS)) {
+                System.err.println(format("%d requests to CloudWatch were still in flight at shutdown.",
+                                          maxInFlightRequests - inFlightRequests.availablePermits()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        retryScheduler.shutdownNow();
+        pendingRetries.forEach(Retry::abandon);
+        cloudWatchLogsClient.close();
+    }
+
+    @Override
+    protected void createLogGroup(CreateLogGroupRequest request) {
+        join(cloudWatchLogsClient.createLogGroup(request));
+    }
+
+    @Override
+    protected void putRetentionPolicy(PutRetentionPolicyRequest request) {
+        join(cloudWatchLogsClient.putRetentionPolicy(request));
+    }
+
+    @Override
+    protected void createLogStream(CreateLogStreamRequest request) {
+        join(cloudWatchLogsClient.createLogStream(request));
+    }
+
+    private static void join(CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A batch waiting for its next attempt. Whoever removes it from {@link #pendingRetries} first, the scheduler or
+     * {@link #close}, decides what happens to it, so it is never sent and spooled both.
+     */
+    private class Retry implements Runnable {
+
+        private final LogDestination destination;
+        private final List<LogEventDTO> logs;
+        private final int retry;
+        private final long deadlineNanos;
+        private final CompletableFuture<WriteOutcome> result;
+
+        Retry(LogDestination destination,
+              List<LogEventDTO> logs,
+              int retry,
+              long deadlineNanos,
+              CompletableFuture<WriteOutcome> result) {
+            this.destination = destination;
+            this.logs = logs;
+            this.retry = retry;
+            this.deadlineNanos = deadlineNanos;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            if (pendingRetries.remove(this)) {
+                send(destination, logs, retry, deadlineNanos, result);
+            }
+        }
+
+        void abandon() {
+            if (pendingRetries.remove(this)) {
+                inFlightRequests.release();
+                result.complete(onWriteFailed(logs));
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && nonNull(error.getCause())) {
+            return error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,76 @@
+package io.clearsolutions.logback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cuts a chronologically sorted list of log events into batches that fit into a single PutLogEvents request.
+ *
+ * @see <a href="https://docs.aws.amazon.com/AmazonCloudWatchLogs/latest/APIReference/API_PutLogEvents.html">PutLogEvents</a>
+ */
+public class BatchBuilder {
+
+    public static final int MAX_BATCH_EVENTS = 10_000;
+    public static final int MAX_BATCH_BYTES = 1_048_576;
+    public static final int EVENT_OVERHEAD_BYTES = 26;
+    public static final long MAX_BATCH_SPAN_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private final int maxBatchEvents;
+    private final int maxBatchBytes;
+
+    public BatchBuilder() {
+        this(MAX_BATCH_EVENTS, MAX_BATCH_BYTES);
+    }
+
+    public BatchBuilder(int maxBatchEvents, int maxBatchBytes) {
+        this.maxBatchEvents = Math.min(maxBatchEvents, MAX_BATCH_EVENTS);
+        this.maxBatchBytes = Math.min(maxBatchBytes, MAX_BATCH_BYTES);
+    }
+
+    public List<List<LogEventDTO>> split(List<LogEventDTO> sortedLogs) {
+        List<List<LogEventDTO>> batches = new ArrayList<>();
+        List<LogEventDTO> batch = new ArrayList<>();
+        int batchBytes = 0;
+        long batchStart = 0;
+
+        for (LogEventDTO log : sortedLogs) {
+            int eventBytes = eventSize(log);
+            if (! batch.isEmpty()
+                && (batch.size() >= maxBatchEvents
+                    || batchBytes + eventBytes > maxBatchBytes
+                    || log.getTimestamp() - batchStart >= MAX_BATCH_SPAN_MILLIS)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            if (batch.isEmpty()) {
+                batchStart = log.getTimestamp();
+            }
+            batch.add(log);
+            batchBytes += eventBytes;
+        }
+
+        if (! batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    public static int batchSize(List<LogEventDTO> batch) {
+        int bytes = 0;
+        for (LogEventDTO log : batch) {
+            bytes += eventSize(log);
+        }
+        return bytes;
+    }
+
+    /**
+     * Calculates the size CloudWatch charges against the batch limit for a single event: the UTF-8 length of the
+     * message, capped the same way {@link AbstractCloudWatchLogWriter#ensureNotLargerThan256KB(byte[])} cuts it, plus
+     * the fixed per-event overhead.
+     */
+    public static int eventSize(LogEventDTO log) {
+        return Math.min(log.getMessage().length, AbstractCloudWatchLogWriter.MAX_MESSAGE_SIZE) + EVENT_OVERHEAD_BYTES;
+    }
+}
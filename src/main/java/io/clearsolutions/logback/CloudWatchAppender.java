@@ -4,14 +4,53 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.Layout;
 import ch.qos.logback.core.UnsynchronizedAppenderBase;
 import ch.qos.logback.core.encoder.Encoder;
+import io.clearsolutions.logback.compaction.EventCompactor;
+import io.clearsolutions.logback.configuration.BatchConfiguration;
 import io.clearsolutions.logback.configuration.CloudWatchConfiguration;
+import io.clearsolutions.logback.configuration.CompactionConfiguration;
+import io.clearsolutions.logback.configuration.EmfConfiguration;
+import io.clearsolutions.logback.configuration.HttpClientType;
 import io.clearsolutions.logback.configuration.LogbackConfiguration;
+import io.clearsolutions.logback.configuration.RetryConfiguration;
+import io.clearsolutions.logback.configuration.RoutingConfiguration;
+import io.clearsolutions.logback.configuration.ShardingConfiguration;
+import io.clearsolutions.logback.configuration.ShardingStrategy;
+import io.clearsolutions.logback.configuration.ShippingConfiguration;
+import io.clearsolutions.logback.configuration.SpoolConfiguration;
+import io.clearsolutions.logback.configuration.TransportConfiguration;
+import io.clearsolutions.logback.emf.MetricAggregator;
+import io.clearsolutions.logback.metrics.AppenderMetrics;
+import io.clearsolutions.logback.metrics.MetricsListener;
+import io.clearsolutions.logback.overflow.BlockPolicy;
+import io.clearsolutions.logback.overflow.DiscardByLevelPolicy;
+import io.clearsolutions.logback.overflow.DropNewestPolicy;
+import io.clearsolutions.logback.overflow.DropOldestPolicy;
+import io.clearsolutions.logback.overflow.OverflowPolicy;
+import io.clearsolutions.logback.overflow.OverflowStrategy;
+import io.clearsolutions.logback.overflow.SamplingPolicy;
+import io.clearsolutions.logback.queue.RingBufferQueue;
+import io.clearsolutions.logback.retry.RetryEngine;
+import io.clearsolutions.logback.routing.Route;
+import io.clearsolutions.logback.spool.DiskSpool;
+import io.clearsolutions.logback.util.WorkerThreads;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
 
 public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
 
+    private static final long DISCARD_REPORT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long SHUTDOWN_GRACE_MILLIS = 100;
+
     private Layout<ILoggingEvent> layout;
     private Encoder<ILoggingEvent> encoder;
 
@@ -22,21 +61,149 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
     private String accessKeyId;
     private String secretAccessKey;
     private int retentionTimeDays = 0;
+    private boolean createResources = true;
+    private long flushIntervalMillis = 1000;
+    private int maxBatchEvents = BatchBuilder.MAX_BATCH_EVENTS;
+    private int maxBatchBytes = BatchBuilder.MAX_BATCH_BYTES;
+    private boolean asyncShipping = false;
+    private int maxInFlightRequests = 4;
+    private int logStreamShards = 1;
+    private ShardingStrategy shardingStrategy = ShardingStrategy.ROUND_ROBIN;
+    private String shardKey;
+    private int queueCapacity = 10000;
+    private boolean encodeOnAppend = false;
+    private String spoolDirectory;
+    private int spoolSegmentSize = 16 * 1024 * 1024;
+    private long maxSpoolSize = 512L * 1024 * 1024;
+    private OverflowStrategy overflowStrategy = OverflowStrategy.DROP_NEWEST;
+    private OverflowPolicy overflowPolicy;
+    private long blockTimeoutMillis = 100;
+    private int discardingThreshold = -1;
+    private double sampleRate = 0.1;
+    private boolean jmxEnabled = true;
+    private int maxRetries = 5;
+    private long retryBaseDelayMillis = 100;
+    private long retryMaxDelayMillis = 10_000;
+    private long retryDeadlineMillis = 60_000;
+    private boolean adaptiveRateLimiting = false;
+    private double maxRequestsPerSecond = 50;
+    private long shutdownTimeoutMillis = 5000;
+    private int workerThreads = 1;
+    private boolean virtualThreads = false;
+    private boolean deduplicateStackTraces = false;
+    private long stackTraceWindowMillis = 60_000;
+    private boolean collapseRepeats = false;
+    private boolean emfEnabled = false;
+    private String metricNamespace = "Application";
+    private String metricMarker = "METRIC";
+    private String metricKeyPrefix = "metric.";
+    private String metricDimensions;
+    private long metricIntervalMillis = 60_000;
+    private final List<Route> routes = new ArrayList<>();
+    private HttpClientType httpClientType = HttpClientType.APACHE;
+    private int maxConnections = 50;
+    private long connectionTimeoutMillis = 2000;
+    private long socketTimeoutMillis = 10_000;
+    private long apiCallTimeoutMillis = 0;
+    private long apiCallAttemptTimeoutMillis = 0;
+    private boolean tcpKeepAlive = true;
+    private long connectionMaxIdleMillis = 60_000;
+    private boolean gzipCompression = false;
+    private int compressionThresholdBytes = 1024;
+
+    // shared by all workers
+    private RingBufferQueue<LogEventDTO> logs;
+    private LogEventEncoder logEventEncoder;
+    private DiskSpool spool;
+    private OverflowPolicy activeOverflowPolicy;
+    private MetricAggregator metricAggregator;
+    private List<Worker> workers;
+    private List<Thread> threads;
 
-    private final BlockingQueue<ILoggingEvent> logs = new ArrayBlockingQueue<>(10000);
-    private Thread worker;
+    private final AppenderMetrics metrics = new AppenderMetrics();
+    private ObjectName metricsObjectName;
+    private final LongAdder discardedEvents = new LongAdder();
+    private final AtomicLong lastDiscardReport = new AtomicLong();
 
     @Override
     protected void append(ILoggingEvent iLoggingEvent) {
-        boolean offer = logs.offer(iLoggingEvent);
-        if (! offer) {
-            addWarn("Log queue is full, discarding log event: " + iLoggingEvent);
+        if (metricAggregator != null && metricAggregator.record(iLoggingEvent)) {
+            return;
+        }
+        LogEventDTO log;
+        if (encodeOnAppend) {
+            log = logEventEncoder.encode(iLoggingEvent);
+        } else {
+            iLoggingEvent.prepareForDeferredProcessing();
+            log = LogEventDTO.deferred(iLoggingEvent);
+        }
+        boolean offer = activeOverflowPolicy.offer(logs, log, iLoggingEvent.getLevel(), this::discard);
+        if (offer) {
+            metrics.eventEnqueued();
+        } else {
+            discard(log);
+        }
+    }
+
+    private void discard(LogEventDTO log) {
+        if (spool != null) {
+            spool.append(logEventEncoder.encode(log));
+            metrics.eventsSpooled(1);
+            return;
+        }
+        metrics.eventsDiscarded(1);
+        discardedEvents.increment();
+        reportDiscardedEvents(false);
+    }
+
+    /**
+     * Reports the number of discarded events at most once per interval instead of a warning per event, which would
+     * only add load while the appender is already overloaded.
+     */
+    private void reportDiscardedEvents(boolean force) {
+        long now = System.currentTimeMillis();
+        long lastReport = lastDiscardReport.get();
+        if ((force || now - lastReport >= DISCARD_REPORT_INTERVAL_MILLIS)
+            && lastDiscardReport.compareAndSet(lastReport, now)) {
+            long discarded = discardedEvents.sumThenReset();
+            if (discarded > 0) {
+                addWarn(format("Log queue is full, discarded %d log events since %tT", discarded, lastReport));
+            }
+        }
+    }
+
+    private OverflowPolicy createOverflowPolicy() {
+        if (overflowPolicy != null) {
+            return overflowPolicy;
+        }
+        int threshold = discardingThreshold < 0 ? logs.capacity() / 5 : discardingThreshold;
+        switch (overflowStrategy) {
+            case BLOCK:
+                return new BlockPolicy(blockTimeoutMillis);
+            case DROP_OLDEST:
+                return new DropOldestPolicy();
+            case DISCARD_BY_LEVEL:
+                return new DiscardByLevelPolicy(threshold);
+            case SAMPLE:
+                return new SamplingPolicy(threshold, sampleRate);
+            default:
+                return new DropNewestPolicy();
         }
     }
 
     @Override
     public void start() {
-        super.start();
+        logs = new RingBufferQueue<>(queueCapacity);
+        metrics.bindQueue(logs::size, logs::capacity);
+        activeOverflowPolicy = createOverflowPolicy();
+        var emfConfiguration = new EmfConfiguration(emfEnabled,
+                                                    metricNamespace,
+                                                    metricMarker,
+                                                    metricKeyPrefix,
+                                                    metricDimensions,
+                                                    metricIntervalMillis);
+        metricAggregator = emfConfiguration.isEmfEnabled() ? new MetricAggregator(emfConfiguration) : null;
+        lastDiscardReport.set(System.currentTimeMillis());
         try {
             var configuration = new CloudWatchConfiguration(logGroupName,
                                                             logStreamName,
@@ -44,21 +211,86 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
                                                             cloudWatchEndpoint,
                                                             accessKeyId,
                                                             secretAccessKey,
-                                                            retentionTimeDays);
+                                                            retentionTimeDays,
+                                                            createResources);
 
             if (configuration.isConfigured()) {
-                var cloudWatchLogWriter = new CloudWatchLogWriter(configuration);
+                var shardingConfiguration = new ShardingConfiguration(logStreamShards, shardingStrategy, shardKey);
+                var routingConfiguration = new RoutingConfiguration(routes);
                 var logbackConfiguration = new LogbackConfiguration(layout, encoder);
-                worker = new Thread(new Worker(logs, cloudWatchLogWriter, logbackConfiguration));
-                worker.setDaemon(true);
-                worker.setName("CloudWatchAppender-Worker");
-                worker.start();
+                logEventEncoder = new LogEventEncoder(logbackConfiguration,
+                                                      shardingConfiguration,
+                                                      routingConfiguration);
+                var spoolConfiguration = new SpoolConfiguration(spoolDirectory, spoolSegmentSize, maxSpoolSize);
+                if (spoolConfiguration.isEnabled()) {
+                    spool = new DiskSpool(spoolConfiguration);
+                    metrics.bindSpool(spool::getSpooledEvents);
+                }
+                var retryConfiguration = new RetryConfiguration(maxRetries,
+                                                                retryBaseDelayMillis,
+                                                                retryMaxDelayMillis,
+                                                                retryDeadlineMillis,
+                                                                adaptiveRateLimiting,
+                                                                maxRequestsPerSecond);
+                var retryEngine = new RetryEngine(retryConfiguration);
+                var shippingConfiguration = new ShippingConfiguration(asyncShipping,
+                                                                      maxInFlightRequests,
+                                                                      workerThreads,
+                                                                      virtualThreads);
+                var transportConfiguration = new TransportConfiguration(httpClientType,
+                                                                        maxConnections,
+                                                                        connectionTimeoutMillis,
+                                                                        socketTimeoutMillis,
+                                                                        apiCallTimeoutMillis,
+                                                                        apiCallAttemptTimeoutMillis,
+                                                                        tcpKeepAlive,
+                                                                        connectionMaxIdleMillis,
+                                                                        gzipCompression,
+                                                                        compressionThresholdBytes);
+                DiskSpool writerSpool = spool;
+                // runs on the worker thread, the appender accepts events before the client exists
+                Supplier<LogWriter> logWriterFactory = () -> {
+                    var destinations = destinations(configuration, shardingConfiguration, routingConfiguration);
+                    var clientFactory = new CloudWatchClientFactory(configuration, transportConfiguration);
+                    return shippingConfiguration.isAsyncShipping()
+                           ? new AsyncCloudWatchLogWriter(configuration,
+                                                          clientFactory,
+                                                          destinations,
+                                                          shippingConfiguration,
+                                                          writerSpool,
+                                                          metrics,
+                                                          retryEngine)
+                           : new CloudWatchLogWriter(configuration,
+                                                     clientFactory,
+                                                     destinations,
+                                                     writerSpool,
+                                                     metrics,
+                                                     retryEngine);
+                };
+                var batchConfiguration = new BatchConfiguration(flushIntervalMillis, maxBatchEvents, maxBatchBytes);
+                var compactionConfiguration = new CompactionConfiguration(deduplicateStackTraces,
+                                                                          stackTraceWindowMillis,
+                                                                          collapseRepeats);
+                if (compactionConfiguration.isEnabled() && encodeOnAppend) {
+                    addWarn("Compaction has no effect with encodeOnAppend, events are encoded before it runs");
+                }
+                if (shippingConfiguration.isVirtualThreads() && ! WorkerThreads.isVirtualThreadSupported()) {
+                    addWarn("Virtual threads need Java 21 or later, the workers run on platform threads");
+                }
+                startWorkers(shippingConfiguration,
+                             new SharedLogWriter(logWriterFactory, shippingConfiguration.getWorkerThreads()),
+                             batchConfiguration,
+                             shardingConfiguration,
+                             compactionConfiguration);
+                registerMetrics();
+                // last, append() may run on other threads as soon as the appender is started
+                super.start();
             } else {
-                super.stop();
                 addWarn("Failed to start CloudWatchAppender, missing configuration");
             }
         } catch (Exception e) {
-            super.stop();
+            // releases the workers and the spool if they were created already
+            stop();
             addWarn("Failed to start CloudWatchAppender", e);
         }
     }
@@ -66,15 +298,153 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
     @Override
     public void stop() {
         super.stop();
-        if (worker != null) {
-            try {
-                worker.join();
-            } catch (InterruptedException e) {
-                worker.interrupt();
+        boolean workersTerminated = true;
+        if (workers != null) {
+            workersTerminated = shutdownWorkers();
+            workers = null;
+            threads = null;
+        }
+        if (logs != null) {
+            logs.clear();
+        }
+        if (spool != null) {
+            if (workersTerminated) {
+                spool.close();
+            } else {
+                // a worker that is still running may spool its batch, sealing the segment under it would lose it
+                addWarn("Workers are still running, the spool is left open");
             }
-            worker = null;
+            spool = null;
+        }
+        reportDiscardedEvents(true);
+        unregisterMetrics();
+    }
+
+    /**
+     * Lists the shards of the appender's own stream followed by the shards of every route, so that a destination is
+     * found at {@code route * logStreamShards + shard}. All of them share one client and every worker ships to all
+     * of them.
+     */
+    private static List<LogDestination> destinations(CloudWatchConfiguration configuration,
+                                                     ShardingConfiguration shardingConfiguration,
+                                                     RoutingConfiguration routingConfiguration) {
+        List<LogDestination> destinations = new ArrayList<>();
+        addDestinations(destinations,
+                        shardingConfiguration,
+                        configuration.getLogGroupName(),
+                        configuration.getLogStreamName());
+        for (Route route : routingConfiguration.getRoutes()) {
+            addDestinations(destinations,
+                            shardingConfiguration,
+                            Objects.requireNonNullElse(route.getLogGroupName(), configuration.getLogGroupName()),
+                            Objects.requireNonNullElse(route.getLogStreamName(), configuration.getLogStreamName()));
+        }
+        return destinations;
+    }
+
+    private static void addDestinations(List<LogDestination> destinations,
+                                        ShardingConfiguration shardingConfiguration,
+                                        String logGroupName,
+                                        String logStreamName) {
+        shardingConfiguration.logStreamNames(logStreamName)
+                             .stream()
+                             .map(name -> new LogDestination(logGroupName, name))
+                             .forEach(destinations::add);
+    }
+
+    /**
+     * Starts the workers, all of them take events from the same queue. They share the writer, the spool and the
+     * encoder, each has its own compactor, and only the first one ships the EMF documents.
+     */
+    private void startWorkers(ShippingConfiguration shippingConfiguration,
+                              SharedLogWriter logWriter,
+                              BatchConfiguration batchConfiguration,
+                              ShardingConfiguration shardingConfiguration,
+                              CompactionConfiguration compactionConfiguration) {
+        int workerCount = shippingConfiguration.getWorkerThreads();
+        workers = new ArrayList<>(workerCount);
+        threads = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            var worker = new Worker(logs,
+                                    logWriter::open,
+                                    logEventEncoder,
+                                    batchConfiguration,
+                                    shardingConfiguration,
+                                    spool,
+                                    metrics,
+                                    compactionConfiguration.isEnabled()
+                                    ? new EventCompactor(compactionConfiguration)
+                                    : null,
+                                    i == 0 ? metricAggregator : null);
+            String name = workerCount == 1 ? "CloudWatchAppender-Worker" : "CloudWatchAppender-Worker-" + i;
+            Thread workerThread = WorkerThreads.newThread(worker, name, shippingConfiguration.isVirtualThreads());
+            workers.add(worker);
+            threads.add(workerThread);
+            workerThread.start();
+        }
+    }
+
+    /**
+     * Lets the workers ship the rest of the queue within {@code shutdownTimeoutMillis}. A worker that is still busy
+     * after that is interrupted, which makes the writer spool the batch it is stuck on, and whatever could not be
+     * shipped is reported.
+     *
+     * @return {@code true} if every worker has terminated
+     */
+    private boolean shutdownWorkers() {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+        workers.forEach(worker -> worker.shutdown(deadlineNanos));
+        try {
+            for (Thread workerThread : threads) {
+                // join(0) would wait forever
+                workerThread.join(Math.max(TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()), 1));
+            }
+            for (Thread workerThread : threads) {
+                if (workerThread.isAlive()) {
+                    workerThread.interrupt();
+                    workerThread.join(SHUTDOWN_GRACE_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+        }
+        int unsentEvents = logs.size() + workers.stream().mapToInt(Worker::getUnsentEvents).sum();
+        if (unsentEvents > 0) {
+            addWarn(format("Failed to ship %d log events within shutdownTimeoutMillis=%d",
+                           unsentEvents, shutdownTimeoutMillis));
+        }
+        return threads.stream().noneMatch(Thread::isAlive);
+    }
+
+    private void registerMetrics() {
+        if (! jmxEnabled) {
+            return;
         }
-        logs.clear();
+        try {
+            metricsObjectName = new ObjectName("io.clearsolutions.logback:type=CloudWatchAppender,name="
+                                               + ObjectName.quote(String.valueOf(getName())));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, metricsObjectName);
+        } catch (Exception e) {
+            metricsObjectName = null;
+            addWarn("Failed to register CloudWatchAppender metrics MBean", e);
+        }
+    }
+
+    private void unregisterMetrics() {
+        if (metricsObjectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsObjectName);
+        } catch (Exception e) {
+            addWarn("Failed to unregister CloudWatchAppender metrics MBean", e);
+        }
+        metricsObjectName = null;
+    }
+
+    public AppenderMetrics getMetrics() {
+        return metrics;
     }
 
     public void setLayout(Layout<ILoggingEvent> layout) {
@@ -112,4 +482,293 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
     public void setRetentionTimeDays(int retentionTimeDays) {
         this.retentionTimeDays = retentionTimeDays;
     }
+
+    /**
+     * When off, the log groups and streams are expected to exist and are not created at startup, which saves the
+     * startup calls. A group or stream that turns out to be missing is still created when a write reports it.
+     */
+    public void setCreateResources(boolean createResources) {
+        this.createResources = createResources;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public void setMaxBatchEvents(int maxBatchEvents) {
+        this.maxBatchEvents = maxBatchEvents;
+    }
+
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * Ships batches without blocking the worker, on the Netty client, which needs
+     * {@code software.amazon.awssdk:netty-nio-client} on the classpath.
+     */
+    public void setAsyncShipping(boolean asyncShipping) {
+        this.asyncShipping = asyncShipping;
+    }
+
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    /**
+     * Number of workers. They all take events from the one queue of {@code queueCapacity}, so encoding, batching and
+     * the blocking sends run on that many threads. Events of one thread may then be shipped by different workers in
+     * different requests; CloudWatch orders the events of a stream by their timestamps.
+     */
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    /**
+     * Runs the workers on virtual threads on Java 21 and later, on platform threads before that.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public void setLogStreamShards(int logStreamShards) {
+        this.logStreamShards = logStreamShards;
+    }
+
+    public void setShardingStrategy(ShardingStrategy shardingStrategy) {
+        this.shardingStrategy = shardingStrategy;
+    }
+
+    public void setShardKey(String shardKey) {
+        this.shardKey = shardKey;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Encodes events on the logging thread and queues only the encoded message, so queued events no longer keep their
+     * arguments, MDC and throwable alive. The encoder or layout must be thread-safe.
+     */
+    public void setEncodeOnAppend(boolean encodeOnAppend) {
+        this.encodeOnAppend = encodeOnAppend;
+    }
+
+    /**
+     * Enables the disk spool: events that do not fit into the queue or that CloudWatch does not accept are written to
+     * memory-mapped segment files in this directory and replayed once shipping recovers.
+     */
+    public void setSpoolDirectory(String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    public void setSpoolSegmentSize(int spoolSegmentSize) {
+        this.spoolSegmentSize = spoolSegmentSize;
+    }
+
+    public void setMaxSpoolSize(long maxSpoolSize) {
+        this.maxSpoolSize = maxSpoolSize;
+    }
+
+    public void setOverflowStrategy(OverflowStrategy overflowStrategy) {
+        this.overflowStrategy = overflowStrategy;
+    }
+
+    /**
+     * Sets a custom overflow policy, it takes precedence over {@code overflowStrategy}.
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public void setBlockTimeoutMillis(long blockTimeoutMillis) {
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    public void setDiscardingThreshold(int discardingThreshold) {
+        this.discardingThreshold = discardingThreshold;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setRetryBaseDelayMillis(long retryBaseDelayMillis) {
+        this.retryBaseDelayMillis = retryBaseDelayMillis;
+    }
+
+    public void setRetryMaxDelayMillis(long retryMaxDelayMillis) {
+        this.retryMaxDelayMillis = retryMaxDelayMillis;
+    }
+
+    /**
+     * Total time a batch may spend in retries, counted from its first attempt. A batch that runs out of it is spooled
+     * if a spool is configured and discarded otherwise.
+     */
+    public void setRetryDeadlineMillis(long retryDeadlineMillis) {
+        this.retryDeadlineMillis = retryDeadlineMillis;
+    }
+
+    /**
+     * Off by default. When enabled, the send rate is halved on every throttled request and grows back slowly on
+     * success, never exceeding {@code maxRequestsPerSecond}.
+     */
+    public void setAdaptiveRateLimiting(boolean adaptiveRateLimiting) {
+        this.adaptiveRateLimiting = adaptiveRateLimiting;
+    }
+
+    public void setMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * How long {@link #stop()} may take to ship the events still queued. Keep it below the grace period of the
+     * environment, e.g. {@code terminationGracePeriodSeconds} in Kubernetes.
+     */
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    /**
+     * Ships every distinct stack trace in full once per {@code stackTraceWindowMillis}. Repeats within the window
+     * carry the exception class, its message and a {@code #fingerprint} reference to the full trace instead.
+     */
+    public void setDeduplicateStackTraces(boolean deduplicateStackTraces) {
+        this.deduplicateStackTraces = deduplicateStackTraces;
+    }
+
+    public void setStackTraceWindowMillis(long stackTraceWindowMillis) {
+        this.stackTraceWindowMillis = stackTraceWindowMillis;
+    }
+
+    /**
+     * Merges identical consecutive events, same level, logger, message and exception, into one event with a
+     * "repeated N times" suffix.
+     */
+    public void setCollapseRepeats(boolean collapseRepeats) {
+        this.collapseRepeats = collapseRepeats;
+    }
+
+    /**
+     * Aggregates metric observations logged as events and ships them as CloudWatch Embedded Metric Format documents,
+     * one per dimension set every {@code metricIntervalMillis}, instead of a log line per observation. An observation
+     * is an event marked with {@code metricMarker}, or one with a {@code metric.name} key-value pair, see
+     * {@link MetricAggregator}.
+     */
+    public void setEmfEnabled(boolean emfEnabled) {
+        this.emfEnabled = emfEnabled;
+    }
+
+    public void setMetricNamespace(String metricNamespace) {
+        this.metricNamespace = metricNamespace;
+    }
+
+    public void setMetricMarker(String metricMarker) {
+        this.metricMarker = metricMarker;
+    }
+
+    /**
+     * Prefix of the {@code name}, {@code value}, {@code unit} and {@code type} keys of an observation.
+     */
+    public void setMetricKeyPrefix(String metricKeyPrefix) {
+        this.metricKeyPrefix = metricKeyPrefix;
+    }
+
+    /**
+     * Comma-separated key-value pair or MDC keys used as metric dimensions.
+     */
+    public void setMetricDimensions(String metricDimensions) {
+        this.metricDimensions = metricDimensions;
+    }
+
+    public void setMetricIntervalMillis(long metricIntervalMillis) {
+        this.metricIntervalMillis = metricIntervalMillis;
+    }
+
+    /**
+     * Adds a routing rule, routes are matched in the order they are added and events that match none go to the
+     * appender's own group and stream. See {@link Route}.
+     */
+    public void addRoute(Route route) {
+        routes.add(route);
+    }
+
+    /**
+     * HTTP client of the blocking writer, {@code APACHE} or {@code URL_CONNECTION}. The async writer always uses
+     * Netty. Only Apache comes with the appender, {@code URL_CONNECTION} needs
+     * {@code software.amazon.awssdk:url-connection-client} on the classpath.
+     */
+    public void setHttpClientType(HttpClientType httpClientType) {
+        this.httpClientType = httpClientType;
+    }
+
+    /**
+     * Size of the connection pool, for the async writer the maximum number of concurrent requests.
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public void setConnectionTimeoutMillis(long connectionTimeoutMillis) {
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+    }
+
+    /**
+     * How long to wait for response data before the attempt fails and is retried.
+     */
+    public void setSocketTimeoutMillis(long socketTimeoutMillis) {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    /**
+     * Time limit of a whole SDK call, 0 means none. Retries are done by the appender, so this bounds one attempt as
+     * well as {@code apiCallAttemptTimeoutMillis} does.
+     */
+    public void setApiCallTimeoutMillis(long apiCallTimeoutMillis) {
+        this.apiCallTimeoutMillis = apiCallTimeoutMillis;
+    }
+
+    public void setApiCallAttemptTimeoutMillis(long apiCallAttemptTimeoutMillis) {
+        this.apiCallAttemptTimeoutMillis = apiCallAttemptTimeoutMillis;
+    }
+
+    public void setTcpKeepAlive(boolean tcpKeepAlive) {
+        this.tcpKeepAlive = tcpKeepAlive;
+    }
+
+    /**
+     * Pooled connections idle for longer are closed, keep it below the idle timeout of NAT gateways and proxies
+     * on the way, 350 seconds for an AWS NAT gateway.
+     */
+    public void setConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        this.connectionMaxIdleMillis = connectionMaxIdleMillis;
+    }
+
+    /**
+     * Sends PutLogEvents bodies gzip-compressed. If the endpoint rejects a compressed request, compression is switched
+     * off and the batch is sent again uncompressed.
+     */
+    public void setGzipCompression(boolean gzipCompression) {
+        this.gzipCompression = gzipCompression;
+    }
+
+    /**
+     * Request bodies smaller than this are sent uncompressed.
+     */
+    public void setCompressionThresholdBytes(int compressionThresholdBytes) {
+        this.compressionThresholdBytes = compressionThresholdBytes;
+    }
+
+    public void addMetricsListener(MetricsListener metricsListener) {
+        metrics.addListener(metricsListener);
+    }
 }
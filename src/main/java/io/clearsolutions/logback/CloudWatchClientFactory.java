@@ -0,0 +1,151 @@
+package io.clearsolutions.logback;
+
+import io.clearsolutions.logback.configuration.CloudWatchConfiguration;
+import io.clearsolutions.logback.configuration.HttpClientType;
+import io.clearsolutions.logback.configuration.TransportConfiguration;
+import io.clearsolutions.logback.transport.GzipRequestCompression;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsAsyncClient;
+import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClient;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+
+import static java.lang.String.format;
+import static java.util.Objects.nonNull;
+
+public class CloudWatchClientFactory {
+
+    private final CloudWatchConfiguration configuration;
+    private final TransportConfiguration transportConfiguration;
+    private final GzipRequestCompression requestCompression;
+
+    public CloudWatchClientFactory(CloudWatchConfiguration configuration,
+                                   TransportConfiguration transportConfiguration) {
+        this.configuration = configuration;
+        this.transportConfiguration = transportConfiguration;
+        this.requestCompression = transportConfiguration.isGzipCompression()
+                                  ? new GzipRequestCompression(transportConfiguration.getCompressionThresholdBytes())
+                                  : null;
+    }
+
+    public CloudWatchLogsClient buildClient() {
+        System.out.println("Creating AWSLogs Client");
+        return configure(CloudWatchLogsClient.builder().httpClientBuilder(httpClientBuilder())).build();
+    }
+
+    public CloudWatchLogsAsyncClient buildAsyncClient() {
+        System.out.println("Creating AWSLogs Async Client");
+        SdkAsyncHttpClient.Builder<?> httpClientBuilder;
+        try {
+            httpClientBuilder = nettyClientBuilder();
+        } catch (NoClassDefFoundError e) {
+            throw missingHttpClient("asyncShipping", "netty-nio-client", e);
+        }
+        return configure(CloudWatchLogsAsyncClient.builder().httpClientBuilder(httpClientBuilder)).build();
+    }
+
+    /**
+     * @return the gzip interceptor of the clients built here, {@code null} if compression is off
+     */
+    public GzipRequestCompression getRequestCompression() {
+        return requestCompression;
+    }
+
+    private SdkHttpClient.Builder<?> httpClientBuilder() {
+        if (transportConfiguration.getHttpClientType() == HttpClientType.URL_CONNECTION) {
+            try {
+                return urlConnectionClientBuilder();
+            } catch (NoClassDefFoundError e) {
+                throw missingHttpClient("httpClientType URL_CONNECTION", "url-connection-client", e);
+            }
+        }
+        return ApacheHttpClient.builder()
+                               .maxConnections(transportConfiguration.getMaxConnections())
+                               .connectionTimeout(millis(transportConfiguration.getConnectionTimeoutMillis()))
+                               .socketTimeout(millis(transportConfiguration.getSocketTimeoutMillis()))
+                               .tcpKeepAlive(transportConfiguration.isTcpKeepAlive())
+                               .connectionMaxIdleTime(millis(transportConfiguration.getConnectionMaxIdleMillis()));
+    }
+
+    // the optional clients are only touched in these methods, so the factory loads without them on the classpath
+    private SdkAsyncHttpClient.Builder<?> nettyClientBuilder() {
+        return NettyNioAsyncHttpClient.builder()
+                                      .maxConcurrency(transportConfiguration.getMaxConnections())
+                                      .connectionTimeout(millis(transportConfiguration.getConnectionTimeoutMillis()))
+                                      .readTimeout(millis(transportConfiguration.getSocketTimeoutMillis()))
+                                      .tcpKeepAlive(transportConfiguration.isTcpKeepAlive())
+                                      .connectionMaxIdleTime(millis(transportConfiguration
+                                                                        .getConnectionMaxIdleMillis()));
+    }
+
+    private SdkHttpClient.Builder<?> urlConnectionClientBuilder() {
+        return UrlConnectionHttpClient.builder()
+                                      .connectionTimeout(millis(transportConfiguration.getConnectionTimeoutMillis()))
+                                      .socketTimeout(millis(transportConfiguration.getSocketTimeoutMillis()));
+    }
+
+    private static IllegalStateException missingHttpClient(String setting, String artifactId, NoClassDefFoundError e) {
+        return new IllegalStateException(format("%s needs software.amazon.awssdk:%s on the classpath, it is an "
+                                                + "optional dependency of the appender", setting, artifactId), e);
+    }
+
+    private <B extends AwsClientBuilder<B, ?>> B configure(B builder) {
+        // retries are done by RetryEngine, SDK retries on top of them would multiply the attempts
+        var overrideConfiguration = ClientOverrideConfiguration.builder().retryPolicy(RetryPolicy.none());
+        if (transportConfiguration.getApiCallTimeoutMillis() > 0) {
+            overrideConfiguration.apiCallTimeout(millis(transportConfiguration.getApiCallTimeoutMillis()));
+        }
+        if (transportConfiguration.getApiCallAttemptTimeoutMillis() > 0) {
+            overrideConfiguration.apiCallAttemptTimeout(millis(transportConfiguration
+                                                                   .getApiCallAttemptTimeoutMillis()));
+        }
+        if (nonNull(requestCompression)) {
+            overrideConfiguration.addExecutionInterceptor(requestCompression);
+        }
+        builder = builder.overrideConfiguration(overrideConfiguration.build());
+
+        if (nonNull(configuration.getCloudWatchEndpoint())) {
+            try {
+                builder = builder.endpointOverride(new URI(configuration.getCloudWatchEndpoint()));
+            } catch (URISyntaxException e) {
+                String error = format("Invalid endpoint endpoint URL: %s. Error:  %s",
+                                      configuration.getCloudWatchEndpoint(),
+                                      e.getMessage());
+                System.out.println(error);
+            }
+        }
+
+        if (nonNull(configuration.getLogRegion())) {
+            builder = builder.region(Region.of(configuration.getLogRegion()));
+        }
+
+        if (nonNull(configuration.getAccessKeyId())
+            && nonNull(configuration.getSecretAccessKey())) {
+
+            var awsBasicCredentials =
+                AwsBasicCredentials.create(configuration.getAccessKeyId(), configuration.getSecretAccessKey());
+            AwsCredentialsProvider credentialProvider = StaticCredentialsProvider.create(awsBasicCredentials);
+
+            builder = builder.credentialsProvider(credentialProvider);
+        }
+
+        return builder;
+    }
+
+    private static Duration millis(long millis) {
+        return Duration.ofMillis(millis);
+    }
+}
@@ -0,0 +1,294 @@
+package io.clearsolutions.logback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.core.encoder.EncoderBase;
+import io.clearsolutions.logback.util.JsonWriter;
+import org.slf4j.event.KeyValuePair;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Encodes events as single-line JSON documents that CloudWatch Logs Insights discovers fields in without any parse
+ * command:
+ * <pre>
+ * {"timestamp":"2024-05-01T10:15:30.123Z","level":"ERROR","logger":"com.example.Service","thread":"main",
+ *  "message":"Request failed","mdc":{"requestId":"42"},"kv":{"attempt":3},
+ *  "exception":{"class":"java.io.IOException","message":"Broken pipe","stackTrace":"\tat com.example..."}}
+ * </pre>
+ * Every optional field can be switched off, and the message, the other values and the stack trace each have their own
+ * size cap. The JSON is written directly into a thread-local byte buffer, the only allocation per event is the
+ * resulting array.
+ */
+public class CloudWatchJsonEncoder extends EncoderBase<ILoggingEvent> {
+
+    private static final ThreadLocal<JsonWriter> WRITERS = ThreadLocal.withInitial(JsonWriter::new);
+    private static final int MAX_CAUSE_DEPTH = 16;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private boolean includeTimestamp = true;
+    private boolean includeLevel = true;
+    private boolean includeLogger = true;
+    private boolean includeThread = true;
+    private boolean includeMdc = true;
+    private boolean includeKeyValuePairs = true;
+    private boolean includeThrowable = true;
+    private int maxMessageBytes = 32 * 1024;
+    private int maxValueBytes = 1024;
+    private int maxStackTraceBytes = 16 * 1024;
+
+    @Override
+    public byte[] headerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        JsonWriter writer = WRITERS.get().reset();
+        writer.writeByte('{');
+        if (includeTimestamp) {
+            writer.writeAscii("\"timestamp\":");
+            writeTimestamp(writer, event.getTimeStamp());
+            writer.writeByte(',');
+        }
+        if (includeLevel) {
+            writer.writeAscii("\"level\":\"").writeAscii(event.getLevel().levelStr).writeAscii("\",");
+        }
+        if (includeLogger) {
+            writer.writeAscii("\"logger\":").writeString(event.getLoggerName(), maxValueBytes).writeByte(',');
+        }
+        if (includeThread) {
+            writer.writeAscii("\"thread\":").writeString(event.getThreadName(), maxValueBytes).writeByte(',');
+        }
+        writer.writeAscii("\"message\":").writeString(event.getFormattedMessage(), maxMessageBytes);
+        if (includeMdc) {
+            writeMdc(writer, event.getMDCPropertyMap());
+        }
+        if (includeKeyValuePairs) {
+            writeKeyValuePairs(writer, event.getKeyValuePairs());
+        }
+        if (includeThrowable && nonNull(event.getThrowableProxy())) {
+            writeThrowable(writer, event.getThrowableProxy());
+        }
+        writer.writeByte('}');
+        return writer.toByteArray();
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+
+    private void writeMdc(JsonWriter writer, Map<String, String> mdc) {
+        if (isNull(mdc) || mdc.isEmpty()) {
+            return;
+        }
+        writer.writeAscii(",\"mdc\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> entry : mdc.entrySet()) {
+            if (! first) {
+                writer.writeByte(',');
+            }
+            first = false;
+            writer.writeString(entry.getKey(), maxValueBytes)
+                  .writeByte(':')
+                  .writeString(entry.getValue(), maxValueBytes);
+        }
+        writer.writeByte('}');
+    }
+
+    private void writeKeyValuePairs(JsonWriter writer, List<KeyValuePair> keyValuePairs) {
+        if (isNull(keyValuePairs) || keyValuePairs.isEmpty()) {
+            return;
+        }
+        writer.writeAscii(",\"kv\":{");
+        for (int i = 0; i < keyValuePairs.size(); i++) {
+            KeyValuePair keyValuePair = keyValuePairs.get(i);
+            if (i > 0) {
+                writer.writeByte(',');
+            }
+            writer.writeString(keyValuePair.key, maxValueBytes).writeByte(':');
+            writeValue(writer, keyValuePair.value);
+        }
+        writer.writeByte('}');
+    }
+
+    /**
+     * Numbers and booleans stay JSON numbers and booleans, so Logs Insights can aggregate and compare them.
+     */
+    private void writeValue(JsonWriter writer, Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writer.writeLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            writer.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            writer.writeAscii(value.toString());
+        } else if (value instanceof CharSequence) {
+            writer.writeString((CharSequence) value, maxValueBytes);
+        } else {
+            writer.writeString(isNull(value) ? null : value.toString(), maxValueBytes);
+        }
+    }
+
+    private void writeThrowable(JsonWriter writer, IThrowableProxy throwable) {
+        writer.writeAscii(",\"exception\":{\"class\":").writeString(throwable.getClassName(), maxValueBytes);
+        if (nonNull(throwable.getMessage())) {
+            writer.writeAscii(",\"message\":").writeString(throwable.getMessage(), maxMessageBytes);
+        }
+        writer.writeAscii(",\"stackTrace\":\"");
+        if (! appendStackTrace(writer, throwable, writer.limitAfter(maxStackTraceBytes), 0)) {
+            writer.writeAscii("...");
+        }
+        writer.writeAscii("\"}");
+    }
+
+    /**
+     * Appends the frames in the usual {@code printStackTrace} format, followed by the causes and suppressed
+     * exceptions. The class and the message of the top-level exception are written as separate fields.
+     *
+     * @return {@code false} if the stack trace was cut at {@code limit}
+     */
+    private boolean appendStackTrace(JsonWriter writer, IThrowableProxy throwable, int limit, int depth) {
+        StackTraceElementProxy[] frames = throwable.getStackTraceElementProxyArray();
+        int commonFrames = throwable.getCommonFrames();
+        if (nonNull(frames)) {
+            for (int i = 0; i < frames.length - commonFrames; i++) {
+                if (! appendFrame(writer, frames[i].getStackTraceElement(), limit)) {
+                    return false;
+                }
+            }
+        }
+        if (commonFrames > 0
+            && ! (writer.appendEscaped("\t... ", limit)
+                  && writer.appendDigits(commonFrames, limit)
+                  && writer.appendEscaped(" common frames omitted\n", limit))) {
+            return false;
+        }
+        if (depth >= MAX_CAUSE_DEPTH || throwable.isCyclic()) {
+            return true;
+        }
+        IThrowableProxy[] suppressed = throwable.getSuppressed();
+        if (nonNull(suppressed)) {
+            for (IThrowableProxy suppressedThrowable : suppressed) {
+                if (! appendNested(writer, "Suppressed: ", suppressedThrowable, limit, depth)) {
+                    return false;
+                }
+            }
+        }
+        IThrowableProxy cause = throwable.getCause();
+        return isNull(cause) || appendNested(writer, "Caused by: ", cause, limit, depth);
+    }
+
+    private boolean appendNested(JsonWriter writer, String prefix, IThrowableProxy throwable, int limit, int depth) {
+        if (! (writer.appendEscaped(prefix, limit) && writer.appendEscaped(throwable.getClassName(), limit))) {
+            return false;
+        }
+        if (nonNull(throwable.getMessage())
+            && ! (writer.appendEscaped(": ", limit) && writer.appendEscaped(throwable.getMessage(), limit))) {
+            return false;
+        }
+        return writer.appendEscaped("\n", limit) && appendStackTrace(writer, throwable, limit, depth + 1);
+    }
+
+    private static boolean appendFrame(JsonWriter writer, StackTraceElement frame, int limit) {
+        if (! (writer.appendEscaped("\tat ", limit)
+               && writer.appendEscaped(frame.getClassName(), limit)
+               && writer.appendEscaped(".", limit)
+               && writer.appendEscaped(frame.getMethodName(), limit)
+               && writer.appendEscaped("(", limit))) {
+            return false;
+        }
+        boolean location;
+        if (frame.isNativeMethod()) {
+            location = writer.appendEscaped("Native Method", limit);
+        } else if (isNull(frame.getFileName())) {
+            location = writer.appendEscaped("Unknown Source", limit);
+        } else if (frame.getLineNumber() >= 0) {
+            location = writer.appendEscaped(frame.getFileName(), limit)
+                       && writer.appendEscaped(":", limit)
+                       && writer.appendDigits(frame.getLineNumber(), limit);
+        } else {
+            location = writer.appendEscaped(frame.getFileName(), limit);
+        }
+        return location && writer.appendEscaped(")\n", limit);
+    }
+
+    /**
+     * Writes the timestamp as ISO-8601 in UTC with milliseconds, computing the date from the epoch day
+     * (H. Hinnant's civil_from_days) instead of going through {@code java.time} objects.
+     */
+    private static void writeTimestamp(JsonWriter writer, long epochMillis) {
+        long epochDay = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+        int millisOfDay = (int) Math.floorMod(epochMillis, MILLIS_PER_DAY);
+
+        long shifted = epochDay + 719_468;
+        long era = Math.floorDiv(shifted, 146_097);
+        long dayOfEra = shifted - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        writer.writeByte('"')
+              .writePadded(year, 4).writeByte('-')
+              .writePadded(month, 2).writeByte('-')
+              .writePadded(day, 2).writeByte('T')
+              .writePadded(millisOfDay / 3_600_000, 2).writeByte(':')
+              .writePadded(millisOfDay / 60_000 % 60, 2).writeByte(':')
+              .writePadded(millisOfDay / 1000 % 60, 2).writeByte('.')
+              .writePadded(millisOfDay % 1000, 3).writeAscii("Z\"");
+    }
+
+    public void setIncludeTimestamp(boolean includeTimestamp) {
+        this.includeTimestamp = includeTimestamp;
+    }
+
+    public void setIncludeLevel(boolean includeLevel) {
+        this.includeLevel = includeLevel;
+    }
+
+    public void setIncludeLogger(boolean includeLogger) {
+        this.includeLogger = includeLogger;
+    }
+
+    public void setIncludeThread(boolean includeThread) {
+        this.includeThread = includeThread;
+    }
+
+    public void setIncludeMdc(boolean includeMdc) {
+        this.includeMdc = includeMdc;
+    }
+
+    public void setIncludeKeyValuePairs(boolean includeKeyValuePairs) {
+        this.includeKeyValuePairs = includeKeyValuePairs;
+    }
+
+    public void setIncludeThrowable(boolean includeThrowable) {
+        this.includeThrowable = includeThrowable;
+    }
+
+    /**
+     * Caps the formatted message and the exception message, in bytes of escaped UTF-8.
+     */
+    public void setMaxMessageBytes(int maxMessageBytes) {
+        this.maxMessageBytes = maxMessageBytes;
+    }
+
+    /**
+     * Caps the logger and thread names and every MDC and key-value pair key and value, in bytes of escaped UTF-8.
+     */
+    public void setMaxValueBytes(int maxValueBytes) {
+        this.maxValueBytes = maxValueBytes;
+    }
+
+    public void setMaxStackTraceBytes(int maxStackTraceBytes) {
+        this.maxStackTraceBytes = maxStackTraceBytes;
+    }
+}
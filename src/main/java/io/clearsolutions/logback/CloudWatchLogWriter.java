@@ -1,169 +1,112 @@
 package io.clearsolutions.logback;
 
 import io.clearsolutions.logback.configuration.CloudWatchConfiguration;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
+import io.clearsolutions.logback.metrics.AppenderMetrics;
+import io.clearsolutions.logback.retry.RetryEngine;
+import io.clearsolutions.logback.spool.DiskSpool;
 import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClient;
-import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClientBuilder;
 import software.amazon.awssdk.services.cloudwatchlogs.model.CreateLogGroupRequest;
 import software.amazon.awssdk.services.cloudwatchlogs.model.CreateLogStreamRequest;
-import software.amazon.awssdk.services.cloudwatchlogs.model.InputLogEvent;
 import software.amazon.awssdk.services.cloudwatchlogs.model.InvalidSequenceTokenException;
 import software.amazon.awssdk.services.cloudwatchlogs.model.PutLogEventsRequest;
 import software.amazon.awssdk.services.cloudwatchlogs.model.PutLogEventsResponse;
 import software.amazon.awssdk.services.cloudwatchlogs.model.PutRetentionPolicyRequest;
-import software.amazon.awssdk.services.cloudwatchlogs.model.ResourceAlreadyExistsException;
 
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
-import static java.lang.String.format;
 import static java.util.Objects.nonNull;
 
-public class CloudWatchLogWriter {
+public class CloudWatchLogWriter extends AbstractCloudWatchLogWriter {
 
-    private static final int MAX_MESSAGE_SIZE = 256 * 1024;
-    private static final String THREE_DOTS = "...";
-    private static final int PADDING = 42;//because this is answer to everything
-    private static final int MAX_RETRIES = 3;
-
-    private final CloudWatchConfiguration configuration;
     private final CloudWatchLogsClient cloudWatchLogsClient;
-    private String sequenceToken;
-
-    public CloudWatchLogWriter(CloudWatchConfiguration cloudWatchConfiguration) {
-        this.configuration = cloudWatchConfiguration;
-        this.cloudWatchLogsClient = build();
+    // shared by the workers, a missing entry stands for no token
+    private final Map<LogDestination, String> sequenceTokens = new ConcurrentHashMap<>();
+
+    public CloudWatchLogWriter(CloudWatchConfiguration cloudWatchConfiguration,
+                               CloudWatchClientFactory clientFactory,
+                               List<LogDestination> destinations,
+                               DiskSpool spool,
+                               AppenderMetrics metrics,
+                               RetryEngine retryEngine) {
+        super(cloudWatchConfiguration, clientFactory, destinations, spool, metrics, retryEngine);
+        this.cloudWatchLogsClient = clientFactory.buildClient();
         initCloudWatchLogGroup();
     }
 
-    public void write(List<LogEventDTO> logs) {
-        writeWithRetry(logs, MAX_RETRIES);
-    }
-    private void writeWithRetry(List<LogEventDTO> logs, int retriesLeft) {
+    /**
+     * Sends the batch, retrying on the calling thread. Backoff and rate limiting block the worker, which lets the queue
+     * absorb the slowdown.
+     */
+    @Override
+    public CompletableFuture<WriteOutcome> write(LogDestination destination, List<LogEventDTO> logs) {
+        var result = new CompletableFuture<WriteOutcome>();
+        long deadlineNanos = retryEngine.deadlineNanos();
+        long delayNanos = 0;
+        int retry = 0;
         try {
-            PutLogEventsRequest request = putLogEventsRequest(logs);
-            PutLogEventsResponse putLogEventsResponse = cloudWatchLogsClient.putLogEvents(request);
-            sequenceToken = putLogEventsResponse.nextSequenceToken();
-        } catch (InvalidSequenceTokenException ex) {
-            if (retriesLeft > 0) {
-                System.out.println("Invalid sequence token, retrying... Retries left: " + (retriesLeft - 1));
-                sequenceToken = ex.expectedSequenceToken();
-                writeWithRetry(logs, retriesLeft - 1);
-            } else {
-                System.err.println("Failed to write logs after " + MAX_RETRIES + " retries.");
+            while (true) {
+                TimeUnit.NANOSECONDS.sleep(Math.max(delayNanos, retryEngine.reserveSendSlot()));
+                long start = metrics.requestStarted();
+                try {
+                    String sequenceToken = sequenceTokens.get(destination);
+                    PutLogEventsRequest request = putLogEventsRequest(destination, logs, sequenceToken);
+                    PutLogEventsResponse putLogEventsResponse = cloudWatchLogsClient.putLogEvents(request);
+                    metrics.requestCompleted(start, true);
+                    updateSequenceToken(destination, putLogEventsResponse.nextSequenceToken());
+                    onWriteSucceeded();
+                    result.complete(WriteOutcome.SENT);
+                    return result;
+                } catch (Exception e) {
+                    metrics.requestCompleted(start, false);
+                    delayNanos = onAttemptFailed(destination, logs, e, ++retry, deadlineNanos, result);
+                    if (delayNanos == GIVE_UP) {
+                        return result;
+                    }
+                }
             }
-        } catch (Throwable t) {
-            t.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while writing logs, " + logs.size() + " log events are not sent.");
+            result.complete(onWriteFailed(logs));
+            return result;
         }
     }
 
-    private PutLogEventsRequest putLogEventsRequest(List<LogEventDTO> logs) {
-        var request = PutLogEventsRequest.builder()
-                                         .logGroupName(configuration.getLogGroupName())
-                                         .logStreamName(configuration.getLogStreamName())
-                                         .logEvents(logs.stream()
-                                                        .map(log -> {
-                                                            String message = ensureNotLargerThan256KB(log.getMessage());
-                                                            return InputLogEvent.builder()
-                                                                                .message(message)
-                                                                                .timestamp(log.getTimestamp())
-                                                                                .build();
-                                                        })
-                                                        .collect(Collectors.toList()));
-
-        // Add the sequenceToken if it is not null
-        if (nonNull(sequenceToken)) {
-            request = request.sequenceToken(sequenceToken);
-        }
-        return request.build();
+    @Override
+    public void close(long deadlineNanos) {
+        // writes are synchronous, nothing can be left in flight
+        cloudWatchLogsClient.close();
     }
 
-    /**
-     * Checks if a string is larger than 256 KB in UTF-8 encoding and cuts it to fit within this size if necessary.
-     *
-     * @param input The input string to check and possibly cut.
-     * @return A string that is guaranteed to be less than or equal to 256 KB in UTF-8 byte size.
-     * @see <a href="https://docs.aws.amazon.com/AmazonCloudWatchLogs/latest/APIReference/API_InputLogEvent.html">InputLogEvent</a>
-     */
-    public String ensureNotLargerThan256KB(String input) {
-        byte[] inputBytes = input.getBytes(StandardCharsets.UTF_8);
-
-        if (inputBytes.length <= MAX_MESSAGE_SIZE) {
-            return input;
-        }
-
-        int cutSize = inputBytes.length - PADDING - THREE_DOTS.getBytes(StandardCharsets.UTF_8).length;
-
-        String unsafeTrimmed = new String(inputBytes, 0, cutSize + 1, StandardCharsets.UTF_8);
-        String cutString = unsafeTrimmed.substring(0, unsafeTrimmed.length() - 1);
-        return cutString + THREE_DOTS;
+    @Override
+    protected void onInvalidSequenceToken(LogDestination destination, InvalidSequenceTokenException error) {
+        updateSequenceToken(destination, error.expectedSequenceToken());
     }
 
-    private CloudWatchLogsClient build() {
-        CloudWatchLogsClientBuilder builder = CloudWatchLogsClient.builder();
-        System.out.println("Creating AWSLogs Client");
-
-        if (nonNull(configuration.getCloudWatchEndpoint())) {
-            try {
-                builder = builder.endpointOverride(new URI(configuration.getCloudWatchEndpoint()));
-            } catch (URISyntaxException e) {
-                String error = format("Invalid endpoint endpoint URL: $s. Error:  %s",
-                                      configuration.getCloudWatchEndpoint(),
-                                      e.getMessage());
-                System.out.println(error);
-            }
-        }
-
-        if (nonNull(configuration.getLogRegion())) {
-            builder = builder.region(Region.of(configuration.getLogRegion()));
+    private void updateSequenceToken(LogDestination destination, String sequenceToken) {
+        if (nonNull(sequenceToken)) {
+            sequenceTokens.put(destination, sequenceToken);
+        } else {
+            sequenceTokens.remove(destination);
         }
+    }
 
-        if (nonNull(configuration.getAccessKeyId())
-            && nonNull(configuration.getSecretAccessKey())) {
-
-            var awsBasicCredentials =
-                AwsBasicCredentials.create(configuration.getAccessKeyId(), configuration.getSecretAccessKey());
-            AwsCredentialsProvider credentialProvider = StaticCredentialsProvider.create(awsBasicCredentials);
-
-            builder.credentialsProvider(credentialProvider);
-        }
+    @Override
+    protected void createLogGroup(CreateLogGroupRequest request) {
+        cloudWatchLogsClient.createLogGroup(request);
+    }
 
-        return builder.build();
+    @Override
+    protected void putRetentionPolicy(PutRetentionPolicyRequest request) {
+        cloudWatchLogsClient.putRetentionPolicy(request);
     }
 
-    private void initCloudWatchLogGroup() {
-        try {
-            cloudWatchLogsClient.createLogGroup(CreateLogGroupRequest.builder()
-                                                                     .logGroupName(configuration.getLogGroupName())
-                                                                     .build());
-            if (configuration.getRetentionTimeInDays() > 0) {
-                cloudWatchLogsClient.putRetentionPolicy(PutRetentionPolicyRequest.builder()
-                                                                                 .logGroupName(
-                                                                                     configuration.getLogGroupName())
-                                                                                 .retentionInDays(
-                                                                                     configuration.getRetentionTimeInDays())
-                                                                                 .build());
-            }
-        } catch (ResourceAlreadyExistsException e) {
-            //TODO is it better check if the log group exists?
-        } catch (Throwable t) {
-            t.printStackTrace();
-        }
-        try {
-            cloudWatchLogsClient.createLogStream(CreateLogStreamRequest.builder()
-                                                                       .logGroupName(configuration.getLogGroupName())
-                                                                       .logStreamName(configuration.getLogStreamName())
-                                                                       .build());
-        } catch (ResourceAlreadyExistsException e) {
-            //TODO is it better check if the log group exists?
-        } catch (Throwable t) {
-            t.printStackTrace();
-        }
+    @Override
+    protected void createLogStream(CreateLogStreamRequest request) {
+        cloudWatchLogsClient.createLogStream(request);
     }
 }
@@ -0,0 +1,48 @@
+package io.clearsolutions.logback;
+
+import java.util.Objects;
+
+/**
+ * A log group and stream pair a batch is shipped to. Sequence tokens and ordering are kept per destination.
+ */
+public class LogDestination {
+
+    private final String logGroupName;
+    private final String logStreamName;
+
+    public LogDestination(String logGroupName, String logStreamName) {
+        this.logGroupName = logGroupName;
+        this.logStreamName = logStreamName;
+    }
+
+    public String getLogGroupName() {
+        return logGroupName;
+    }
+
+    public String getLogStreamName() {
+        return logStreamName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        LogDestination that = (LogDestination) o;
+        return Objects.equals(logGroupName, that.logGroupName)
+               && Objects.equals(logStreamName, that.logStreamName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(logGroupName, logStreamName);
+    }
+
+    @Override
+    public String toString() {
+        return logGroupName + "/" + logStreamName;
+    }
+}
@@ -1,20 +1,68 @@
 package io.clearsolutions.logback;
 
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import static java.util.Objects.isNull;
+
 public class LogEventDTO {
 
-    private final String message;
+    private final byte[] message;
     private final long timestamp;
+    private final int shard;
+    private final ILoggingEvent event;
+
+    public LogEventDTO(byte[] message, long timestamp) {
+        this(message, timestamp, 0);
+    }
 
-    public LogEventDTO(String message, long timestamp) {
+    public LogEventDTO(byte[] message, long timestamp, int shard) {
+        this(message, timestamp, shard, null);
+    }
+
+    private LogEventDTO(byte[] message, long timestamp, int shard, ILoggingEvent event) {
         this.message = message;
         this.timestamp = timestamp;
+        this.shard = shard;
+        this.event = event;
+    }
+
+    /**
+     * Wraps an event whose encoding is left to the worker thread.
+     */
+    public static LogEventDTO deferred(ILoggingEvent event) {
+        return new LogEventDTO(null, event.getTimeStamp(), 0, event);
     }
 
-    public String getMessage() {
+    /**
+     * @return a copy of this event with another timestamp
+     */
+    public LogEventDTO withTimestamp(long timestamp) {
+        return new LogEventDTO(message, timestamp, shard, event);
+    }
+
+    public boolean isEncoded() {
+        return isNull(event);
+    }
+
+    /**
+     * @return the UTF-8 encoded message, exactly as the encoder produced it
+     */
+    public byte[] getMessage() {
         return message;
     }
 
     public long getTimestamp() {
         return timestamp;
     }
+
+    /**
+     * @return the index of the destination in the list built by the appender, see {@link LogEventEncoder}
+     */
+    public int getShard() {
+        return shard;
+    }
+
+    public ILoggingEvent getEvent() {
+        return event;
+    }
 }
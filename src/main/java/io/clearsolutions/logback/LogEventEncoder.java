@@ -0,0 +1,64 @@
+package io.clearsolutions.logback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import io.clearsolutions.logback.configuration.LogbackConfiguration;
+import io.clearsolutions.logback.configuration.RoutingConfiguration;
+import io.clearsolutions.logback.configuration.ShardingConfiguration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Turns a logging event into the compact form that is batched and shipped: the encoded message, the timestamp and the
+ * destination slot, {@code route * logStreamShards + shard}, which picks the group and the stream. Runs on the worker
+ * thread by default, or on the logging thread when {@code encodeOnAppend} is enabled, so the configured encoder or
+ * layout has to be thread-safe in that mode.
+ */
+public class LogEventEncoder {
+
+    private final LogbackConfiguration configuration;
+    private final ShardingConfiguration shardingConfiguration;
+    private final RoutingConfiguration routingConfiguration;
+
+    public LogEventEncoder(LogbackConfiguration configuration,
+                           ShardingConfiguration shardingConfiguration,
+                           RoutingConfiguration routingConfiguration) {
+        this.configuration = configuration;
+        this.shardingConfiguration = shardingConfiguration;
+        this.routingConfiguration = routingConfiguration;
+    }
+
+    public LogEventDTO encode(ILoggingEvent log) {
+        byte[] message = Optional.ofNullable(configuration.getEncoder())
+                                 .map(encoder -> encoder.encode(log))
+                                 .orElseGet(() -> configuration.getLayout()
+                                                               .doLayout(log)
+                                                               .getBytes(StandardCharsets.UTF_8));
+        int slot = routingConfiguration.routeOf(log) * shardingConfiguration.getLogStreamShards() + shardOf(log);
+        return new LogEventDTO(message, log.getTimeStamp(), slot);
+    }
+
+    /**
+     * Resolves an event queued in deferred mode, events encoded on append are returned as is.
+     */
+    public LogEventDTO encode(LogEventDTO log) {
+        if (log.isEncoded()) {
+            return log;
+        }
+        return encode(log.getEvent());
+    }
+
+    private int shardOf(ILoggingEvent log) {
+        int shards = shardingConfiguration.getLogStreamShards();
+        switch (shardingConfiguration.getShardingStrategy()) {
+            case THREAD:
+                return Math.floorMod(Objects.hashCode(log.getThreadName()), shards);
+            case MDC:
+                String key = log.getMDCPropertyMap().get(shardingConfiguration.getShardKey());
+                return Math.floorMod(Objects.hashCode(key), shards);
+            default:
+                return 0;
+        }
+    }
+}
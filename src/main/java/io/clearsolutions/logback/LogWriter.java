@@ -0,0 +1,24 @@
+package io.clearsolutions.logback;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface LogWriter {
+
+    /**
+     * Ships a single batch of chronologically sorted events that already fits into one PutLogEvents request.
+     *
+     * @return completes once the batch is sent, spooled or discarded, the blocking writer returns it completed
+     */
+    CompletableFuture<WriteOutcome> write(LogDestination destination, List<LogEventDTO> logs);
+
+    /**
+     * Waits until the batches handed over so far are acknowledged, but not past the deadline, and releases the client.
+     */
+    void close(long deadlineNanos);
+
+    /**
+     * @return the destinations this writer ships to, the destination of slot {@code i} at index {@code i}
+     */
+    List<LogDestination> getDestinations();
+}
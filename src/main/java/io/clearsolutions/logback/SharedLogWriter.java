@@ -0,0 +1,65 @@
+package io.clearsolutions.logback;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * One writer, and so one client and connection pool, for all workers. It is created by the first worker that opens it
+ * and closed by the last worker that closes it, so a worker that finishes early does not cut off the requests of the
+ * others.
+ */
+class SharedLogWriter implements LogWriter {
+
+    private final Supplier<LogWriter> logWriterFactory;
+    private final AtomicInteger openWorkers;
+    private LogWriter logWriter;
+    private RuntimeException failure;
+
+    SharedLogWriter(Supplier<LogWriter> logWriterFactory, int workers) {
+        this.logWriterFactory = logWriterFactory;
+        this.openWorkers = new AtomicInteger(workers);
+    }
+
+    /**
+     * Creates the writer on the first call, every worker calls this once before it writes and closes it when it stops.
+     * A worker whose call fails does not close it.
+     *
+     * @throws RuntimeException the failure of the first call, to every worker
+     */
+    synchronized LogWriter open() {
+        if (isNull(logWriter) && isNull(failure)) {
+            try {
+                logWriter = logWriterFactory.get();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        if (nonNull(failure)) {
+            openWorkers.decrementAndGet();
+            throw failure;
+        }
+        return this;
+    }
+
+    @Override
+    public CompletableFuture<WriteOutcome> write(LogDestination destination, List<LogEventDTO> logs) {
+        return logWriter.write(destination, logs);
+    }
+
+    @Override
+    public void close(long deadlineNanos) {
+        if (openWorkers.decrementAndGet() == 0 && nonNull(logWriter)) {
+            logWriter.close(deadlineNanos);
+        }
+    }
+
+    @Override
+    public List<LogDestination> getDestinations() {
+        return logWriter.getDestinations();
+    }
+}
@@ -0,0 +1,139 @@
+package io.clearsolutions.logback;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts a worker's buffer into the chronological order PutLogEvents requires. Events arrive almost sorted, so the
+ * timestamps are copied into a primitive array and scanned for ascending runs: a sorted buffer costs one pass, and
+ * otherwise only the runs are merged, O(n log r) for r runs instead of a full sort. Equal timestamps keep their
+ * arrival order. The arrays are reused between calls, so an instance belongs to one worker.
+ * <p>
+ * Timestamps CloudWatch would reject, older than 14 days or more than 2 hours ahead, are set to the current time
+ * before sorting, so the event is shipped instead of being dropped by CloudWatch.
+ *
+ * @see <a href="https://docs.aws.amazon.com/AmazonCloudWatchLogs/latest/APIReference/API_PutLogEvents.html">PutLogEvents</a>
+ */
+public class TimestampSorter {
+
+    public static final long MAX_EVENT_AGE_MILLIS = TimeUnit.DAYS.toMillis(14);
+    public static final long MAX_EVENT_AHEAD_MILLIS = TimeUnit.HOURS.toMillis(2);
+    // arrays that grew for a large drain are dropped instead of being held by the worker forever
+    private static final int MAX_RETAINED_CAPACITY = 4 * BatchBuilder.MAX_BATCH_EVENTS;
+
+    private long[] timestamps = new long[0];
+    private int[] order = new int[0];
+    private int[] merged = new int[0];
+    // start index of every run, followed by the buffer size
+    private int[] runStarts = new int[0];
+    private LogEventDTO[] events = new LogEventDTO[0];
+
+    /**
+     * Sorts the buffer in place by timestamp.
+     *
+     * @return the number of events whose timestamp was set to {@code now}
+     */
+    public int sort(List<LogEventDTO> buffer, long now) {
+        int size = buffer.size();
+        ensureCapacity(size);
+        long oldest = now - MAX_EVENT_AGE_MILLIS;
+        long newest = now + MAX_EVENT_AHEAD_MILLIS;
+        int adjusted = 0;
+        int runCount = 0;
+        for (int i = 0; i < size; i++) {
+            LogEventDTO log = buffer.get(i);
+            long timestamp = log.getTimestamp();
+            if (timestamp < oldest || timestamp > newest) {
+                buffer.set(i, log.withTimestamp(now));
+                timestamp = now;
+                adjusted++;
+            }
+            if (i == 0 || timestamp < timestamps[i - 1]) {
+                runStarts[runCount++] = i;
+            }
+            timestamps[i] = timestamp;
+        }
+        if (runCount > 1) {
+            runStarts[runCount] = size;
+            mergeRuns(runCount, size);
+            reorder(buffer, size);
+        }
+        if (timestamps.length > MAX_RETAINED_CAPACITY) {
+            timestamps = new long[0];
+            order = new int[0];
+            merged = new int[0];
+            runStarts = new int[0];
+            events = new LogEventDTO[0];
+        }
+        return adjusted;
+    }
+
+    /**
+     * Merges neighbouring runs pairwise, halving the number of runs each round, and leaves the sorted indexes in
+     * {@link #order}.
+     */
+    private void mergeRuns(int runCount, int size) {
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        int[] source = order;
+        int[] target = merged;
+        while (runCount > 1) {
+            int mergedRuns = 0;
+            for (int run = 0; run < runCount; run += 2) {
+                int start = runStarts[run];
+                int middle = runStarts[Math.min(run + 1, runCount)];
+                int end = runStarts[Math.min(run + 2, runCount)];
+                merge(source, target, start, middle, end);
+                runStarts[mergedRuns++] = start;
+            }
+            runStarts[mergedRuns] = size;
+            runCount = mergedRuns;
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        order = source;
+        merged = target;
+    }
+
+    private void merge(int[] source, int[] target, int start, int middle, int end) {
+        int left = start;
+        int right = middle;
+        int next = start;
+        if (middle < end && timestamps[source[middle - 1]] > timestamps[source[middle]]) {
+            while (left < middle && right < end) {
+                // <= takes the earlier run first on ties, which keeps the sort stable
+                if (timestamps[source[left]] <= timestamps[source[right]]) {
+                    target[next++] = source[left++];
+                } else {
+                    target[next++] = source[right++];
+                }
+            }
+        }
+        System.arraycopy(source, left, target, next, middle - left);
+        next += middle - left;
+        System.arraycopy(source, right, target, next, end - right);
+    }
+
+    private void reorder(List<LogEventDTO> buffer, int size) {
+        for (int i = 0; i < size; i++) {
+            events[i] = buffer.get(order[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            buffer.set(i, events[i]);
+        }
+        Arrays.fill(events, 0, size, null);
+    }
+
+    private void ensureCapacity(int size) {
+        if (timestamps.length < size) {
+            timestamps = new long[size];
+            order = new int[size];
+            merged = new int[size];
+            runStarts = new int[size + 1];
+            events = new LogEventDTO[size];
+        }
+    }
+}
@@ -1,68 +1,396 @@
 package io.clearsolutions.logback;
 
-import ch.qos.logback.classic.spi.ILoggingEvent;
-import io.clearsolutions.logback.configuration.LogbackConfiguration;
+import io.clearsolutions.logback.compaction.EventCompactor;
+import io.clearsolutions.logback.configuration.BatchConfiguration;
+import io.clearsolutions.logback.configuration.ShardingConfiguration;
+import io.clearsolutions.logback.configuration.ShardingStrategy;
+import io.clearsolutions.logback.emf.MetricAggregator;
+import io.clearsolutions.logback.metrics.AppenderMetrics;
+import io.clearsolutions.logback.queue.RingBufferQueue;
+import io.clearsolutions.logback.spool.DiskSpool;
+import io.clearsolutions.logback.spool.SpoolReplay;
 
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 
 public class Worker implements Runnable {
 
-    private final long thresholdTime = 1000; // 1 seconds in milliseconds
-    private final int maxSize = 100; // Minimum number of log events to process at once
+    private final RingBufferQueue<LogEventDTO> logs;
+    private final Supplier<LogWriter> logWriterFactory;
+    private final LogEventEncoder logEventEncoder;
+    private final BatchConfiguration batchConfiguration;
+    private final BatchBuilder batchBuilder;
+    private final BatchBuilder shutdownBatchBuilder;
+    private final ShardingConfiguration shardingConfiguration;
+    private final DiskSpool spool;
+    private final AppenderMetrics metrics;
+    private final EventCompactor compactor;
+    private final MetricAggregator metricAggregator;
+    private final TimestampSorter timestampSorter = new TimestampSorter();
+    private long nextMetricFlush;
+
+    // created on the worker thread by initialize()
+    private LogWriter logWriter;
+    private List<LogDestination> destinations;
+    // next round-robin shard of every route
+    private int[] nextShard;
+
+    // events taken off the queue in one drain but not yet added to a batch
+    private final ArrayDeque<LogEventDTO> backlog = new ArrayDeque<>();
 
-    private final BlockingQueue<ILoggingEvent> logs;
-    private final CloudWatchLogWriter cloudWatchLogWriter;
-    private final LogbackConfiguration configuration;
+    // event that did not fit into the previous batch by size, it opens the next one
+    private LogEventDTO carriedOver;
 
-    public Worker(BlockingQueue<ILoggingEvent> logs, CloudWatchLogWriter cloudWatchLogWriter,
-                  LogbackConfiguration configuration) {
+    private volatile long shutdownDeadlineNanos;
+    // batches drained at shutdown count as unsent until their outcome is known, which may come on another thread
+    private final AtomicInteger unsentEvents = new AtomicInteger();
+    private boolean draining;
+
+    public Worker(RingBufferQueue<LogEventDTO> logs, Supplier<LogWriter> logWriterFactory,
+                  LogEventEncoder logEventEncoder, BatchConfiguration batchConfiguration,
+                  ShardingConfiguration shardingConfiguration,
+                  DiskSpool spool, AppenderMetrics metrics, EventCompactor compactor,
+                  MetricAggregator metricAggregator) {
         this.logs = logs;
-        this.cloudWatchLogWriter = cloudWatchLogWriter;
-        this.configuration = configuration;
+        this.logWriterFactory = logWriterFactory;
+        this.logEventEncoder = logEventEncoder;
+        this.batchConfiguration = batchConfiguration;
+        this.batchBuilder = new BatchBuilder(batchConfiguration.getMaxBatchEvents(),
+                                             batchConfiguration.getMaxBatchBytes());
+        this.shutdownBatchBuilder = new BatchBuilder(BatchBuilder.MAX_BATCH_EVENTS, BatchBuilder.MAX_BATCH_BYTES);
+        this.shardingConfiguration = shardingConfiguration;
+        this.spool = spool;
+        this.metrics = metrics;
+        this.compactor = compactor;
+        this.metricAggregator = metricAggregator;
+        if (nonNull(metricAggregator)) {
+            this.nextMetricFlush = System.nanoTime()
+                                   + TimeUnit.MILLISECONDS.toNanos(metricAggregator.getIntervalMillis());
+        }
     }
 
     @Override
     public void run() {
+        if (! initialize()) {
+            return;
+        }
         try {
-            long lastDrainTime = System.currentTimeMillis();
-            while (!Thread.currentThread().isInterrupted()) {
-                if ((System.currentTimeMillis() - lastDrainTime >= thresholdTime
-                    || logs.size() >= maxSize)
-                    && ! logs.isEmpty()) {
-
-                    List<ILoggingEvent> buffer = new ArrayList<>();
-                    logs.drainTo(buffer);
-                    processBuffer(buffer);
-                    lastDrainTime = System.currentTimeMillis();
-                } else {
-                    // Sleep for a short duration to avoid tight looping, adjust as necessary
-                    Thread.sleep(100);
-                }
+            while (! logs.isClosed() && ! Thread.currentThread().isInterrupted()) {
+                replaySpool();
+                flushMetrics(false);
+                processBuffer(collectBatch());
+            }
+            if (logs.isClosed()) {
+                drain();
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             System.out.println("Queue processing thread was interrupted.");
+        } finally {
+            // on every way out, the writer is shared and the last worker to close it releases the client
+            logWriter.close(shutdownDeadlineNanos);
+        }
+    }
+
+    /**
+     * Loads the spool, builds the client, resolves the stream names and creates the log groups and streams on the
+     * worker thread, so the appender starts without waiting for the disk or AWS. Events appended in the meantime wait
+     * in the queue.
+     *
+     * @return {@code false} if the writer could not be created, the queue is closed then and events are rejected
+     */
+    private boolean initialize() {
+        if (nonNull(spool)) {
+            spool.load();
+        }
+        try {
+            logWriter = logWriterFactory.get();
+        } catch (RuntimeException e) {
+            System.err.println("Failed to create the CloudWatch log writer, log events are discarded.");
+            e.printStackTrace();
+            logs.close();
+            return false;
         }
+        destinations = logWriter.getDestinations();
+        nextShard = new int[destinations.size() / shardingConfiguration.getLogStreamShards()];
+        return true;
     }
 
-    public void processBuffer(List<ILoggingEvent> buffer) {
-        List<LogEventDTO> collect = buffer.stream()
-                                          .map(this::createLogEventDTO)
-                                          .sorted(Comparator.comparingLong(LogEventDTO::getTimestamp))
-                                          .collect(Collectors.toList());
-        cloudWatchLogWriter.write(collect);
+    /**
+     * Asks the worker to ship what is left in the queue and to finish by the given deadline. The queue is closed, so
+     * the worker wakes up even if it is idle, and events appended from now on are rejected.
+     */
+    public void shutdown(long deadlineNanos) {
+        shutdownDeadlineNanos = deadlineNanos;
+        logs.close();
+    }
+
+    /**
+     * @return the number of events drained at shutdown or held when the worker was interrupted that were neither
+     *         sent nor spooled, so far
+     */
+    public int getUnsentEvents() {
+        return unsentEvents.get();
+    }
+
+    /**
+     * Ships the rest of the queue in batches as large as the API allows, so the tail goes out in as few requests as
+     * possible. In the async mode these requests are sent in parallel. Batches that would start after the deadline
+     * are spooled if there is a spool and counted as unsent otherwise. Closing the writer waits for the requests.
+     */
+    private void drain() {
+        logs.drainTo(backlog, Integer.MAX_VALUE);
+        while (! logs.isEmpty()) {
+            // a producer claimed its slot before the queue was closed and is about to publish it
+            Thread.onSpinWait();
+            logs.drainTo(backlog, Integer.MAX_VALUE);
+        }
+        List<LogEventDTO> remaining = new ArrayList<>(backlog.size() + 1);
+        if (nonNull(carriedOver)) {
+            remaining.add(carriedOver);
+            carriedOver = null;
+        }
+        while (! backlog.isEmpty()) {
+            remaining.add(logEventEncoder.encode(compact(backlog.poll())));
+        }
+        unsentEvents.set(remaining.size());
+
+        draining = true;
+        processBuffer(remaining, shutdownBatchBuilder);
+        draining = false;
+        flushMetrics(true);
     }
 
-    private LogEventDTO createLogEventDTO(ILoggingEvent log) {
-        String message = Optional.ofNullable(configuration.getEncoder())
-                                 .map(encoder -> new String(encoder.encode(log), StandardCharsets.UTF_8))
-                                 .orElseGet(() -> configuration.getLayout().doLayout(log));
-        return new LogEventDTO(message, log.getTimeStamp());
+    /**
+     * Ships the EMF documents of the metric interval that just ended, or unconditionally on shutdown. They are encoded
+     * already and go through the same batching and writer as log events.
+     */
+    private void flushMetrics(boolean force) {
+        if (isNull(metricAggregator)) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (! force && now - nextMetricFlush < 0) {
+            return;
+        }
+        nextMetricFlush = now + TimeUnit.MILLISECONDS.toNanos(metricAggregator.getIntervalMillis());
+        long timestamp = System.currentTimeMillis();
+        List<LogEventDTO> documents = new ArrayList<>();
+        for (byte[] document : metricAggregator.flush(timestamp)) {
+            documents.add(new LogEventDTO(document, timestamp));
+        }
+        processBuffer(documents);
+    }
+
+    /**
+     * Ships one spooled segment, oldest first, once the last request went through or it is time to probe CloudWatch
+     * again. Events that fail again are spooled anew by the writer. The segment is deleted once every batch of it is done with, which in the async mode is
+     * after this method returns.
+     */
+    private void replaySpool() {
+        if (isNull(spool) || ! spool.isReplayPending()) {
+            return;
+        }
+        SpoolReplay replay = spool.takeOldest();
+        if (nonNull(replay)) {
+            CompletableFuture.allOf(processBuffer(replay.getEvents(), batchBuilder).toArray(CompletableFuture[]::new))
+                             .thenRun(() -> spool.commit(replay));
+        }
+    }
+
+    /**
+     * Blocks until the first event arrives and then lingers for at most {@code flushIntervalMillis} collecting more
+     * events. The batch is returned as soon as it is full either by event count or by bytes, so under load the worker
+     * never waits for the timer, and when idle it stays parked on the queue, waking up only for metric flushes and
+     * spool replays.
+     */
+    private List<LogEventDTO> collectBatch() throws InterruptedException {
+        List<LogEventDTO> batch = new ArrayList<>();
+        try {
+            return collectBatch(batch);
+        } catch (InterruptedException e) {
+            releaseHeldEvents(batch);
+            throw e;
+        }
+    }
+
+    private List<LogEventDTO> collectBatch(List<LogEventDTO> batch) throws InterruptedException {
+        LogEventDTO first = carriedOver;
+        carriedOver = null;
+        if (isNull(first)) {
+            LogEventDTO log = nextEvent();
+            if (isNull(log)) {
+                // the queue was closed while idle, or metrics or a replay are due
+                return batch;
+            }
+            first = logEventEncoder.encode(log);
+        }
+        batch.add(first);
+        int batchBytes = BatchBuilder.eventSize(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchConfiguration.getFlushIntervalMillis());
+        while (batch.size() < batchConfiguration.getMaxBatchEvents()) {
+            LogEventDTO log = nextEvent(deadline);
+            if (isNull(log)) {
+                break;
+            }
+            LogEventDTO logEventDTO = logEventEncoder.encode(log);
+            int eventBytes = BatchBuilder.eventSize(logEventDTO);
+            if (batchBytes + eventBytes > batchConfiguration.getMaxBatchBytes()) {
+                carriedOver = logEventDTO;
+                break;
+            }
+            batch.add(logEventDTO);
+            batchBytes += eventBytes;
+        }
+        return batch;
+    }
+
+    /**
+     * The shutdown deadline interrupts a lingering worker, the events it took off the queue would be lost with it. They
+     * are spooled if there is a spool and counted as unsent otherwise.
+     */
+    private void releaseHeldEvents(List<LogEventDTO> batch) {
+        List<LogEventDTO> held = new ArrayList<>(batch);
+        if (nonNull(carriedOver)) {
+            held.add(carriedOver);
+            carriedOver = null;
+        }
+        while (! backlog.isEmpty()) {
+            held.add(logEventEncoder.encode(backlog.poll()));
+        }
+        if (! held.isEmpty() && spoolOrDiscard(held) == WriteOutcome.DISCARDED) {
+            unsentEvents.addAndGet(held.size());
+        }
+    }
+
+    private LogEventDTO nextEvent() throws InterruptedException {
+        if (backlog.isEmpty() && logs.drainTo(backlog, batchConfiguration.getMaxBatchEvents()) == 0) {
+            long timeout = idleTimeoutNanos();
+            if (timeout == Long.MAX_VALUE) {
+                return compact(logs.take());
+            }
+            return timeout > 0 ? compact(logs.poll(timeout, TimeUnit.NANOSECONDS)) : null;
+        }
+        return compact(backlog.poll());
+    }
+
+    /**
+     * An idle worker wakes up in time for the next metric flush and, while events are spooled, for the next replay,
+     * so the spool empties after an outage even if the application has gone quiet.
+     *
+     * @return how long to wait for an event, {@link Long#MAX_VALUE} to wait for as long as it takes
+     */
+    private long idleTimeoutNanos() {
+        long now = System.nanoTime();
+        long timeout = Long.MAX_VALUE;
+        if (nonNull(metricAggregator)) {
+            timeout = nextMetricFlush - now;
+        }
+        if (nonNull(spool)) {
+            timeout = Math.min(timeout, spool.nanosUntilReplay(now));
+        }
+        return timeout;
+    }
+
+    private LogEventDTO nextEvent(long deadline) throws InterruptedException {
+        if (backlog.isEmpty() && logs.drainTo(backlog, batchConfiguration.getMaxBatchEvents()) == 0) {
+            long remaining = deadline - System.nanoTime();
+            return remaining > 0 ? compact(logs.poll(remaining, TimeUnit.NANOSECONDS)) : null;
+        }
+        return compact(backlog.poll());
+    }
+
+    /**
+     * Repeats are only looked for in the backlog, so merging never waits for events that have not arrived yet.
+     */
+    private LogEventDTO compact(LogEventDTO log) {
+        return isNull(compactor) || isNull(log) ? log : compactor.compact(log, backlog);
+    }
+
+    public void processBuffer(List<LogEventDTO> buffer) {
+        processBuffer(buffer, batchBuilder);
+    }
+
+    private List<CompletableFuture<WriteOutcome>> processBuffer(List<LogEventDTO> buffer, BatchBuilder batchBuilder) {
+        List<CompletableFuture<WriteOutcome>> results = new ArrayList<>();
+        if (buffer.isEmpty()) {
+            return results;
+        }
+        int adjustedTimestamps = timestampSorter.sort(buffer, System.currentTimeMillis());
+        if (adjustedTimestamps > 0) {
+            metrics.timestampsAdjusted(adjustedTimestamps);
+        }
+        if (destinations.size() == 1) {
+            for (List<LogEventDTO> batch : batchBuilder.split(buffer)) {
+                results.add(write(destinations.get(0), batch));
+            }
+            return results;
+        }
+
+        // a stable partition keeps every destination sorted, so the order within each stream is preserved
+        List<List<LogEventDTO>> slots = new ArrayList<>(destinations.size());
+        for (int i = 0; i < destinations.size(); i++) {
+            slots.add(new ArrayList<>());
+        }
+        buffer.forEach(log -> slots.get(slotOf(log)).add(log));
+
+        int shards = shardingConfiguration.getLogStreamShards();
+        boolean roundRobin = shardingConfiguration.getShardingStrategy() == ShardingStrategy.ROUND_ROBIN;
+        for (int slot = 0; slot < slots.size(); slot++) {
+            for (List<LogEventDTO> batch : batchBuilder.split(slots.get(slot))) {
+                if (roundRobin) {
+                    int route = slot / shards;
+                    results.add(write(destinations.get(route * shards + nextShard[route]), batch));
+                    nextShard[route] = (nextShard[route] + 1) % shards;
+                } else {
+                    results.add(write(destinations.get(slot), batch));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Events spooled under a configuration with more destinations go to the default one.
+     */
+    private int slotOf(LogEventDTO log) {
+        return log.getShard() < destinations.size() ? log.getShard() : 0;
+    }
+
+    private CompletableFuture<WriteOutcome> write(LogDestination destination, List<LogEventDTO> batch) {
+        CompletableFuture<WriteOutcome> result;
+        if (logs.isClosed() && System.nanoTime() - shutdownDeadlineNanos > 0) {
+            result = CompletableFuture.completedFuture(spoolOrDiscard(batch));
+        } else {
+            metrics.batch(batch.size(), BatchBuilder.batchSize(batch));
+            result = logWriter.write(destination, batch);
+        }
+        if (draining) {
+            result.thenAccept(outcome -> {
+                if (outcome != WriteOutcome.DISCARDED) {
+                    unsentEvents.addAndGet(-batch.size());
+                }
+            });
+        }
+        return result;
+    }
+
+    private WriteOutcome spoolOrDiscard(List<LogEventDTO> batch) {
+        if (nonNull(spool)) {
+            spool.append(batch);
+            metrics.eventsSpooled(batch.size());
+            return WriteOutcome.SPOOLED;
+        }
+        metrics.eventsDiscarded(batch.size());
+        return WriteOutcome.DISCARDED;
     }
 }
@@ -0,0 +1,19 @@
+package io.clearsolutions.logback;
+
+/**
+ * What became of a batch handed to a {@link LogWriter}.
+ */
+public enum WriteOutcome {
+    /**
+     * CloudWatch accepted the batch, or reported that it had accepted it before.
+     */
+    SENT,
+    /**
+     * The batch was not accepted and was kept in the spool to be replayed later.
+     */
+    SPOOLED,
+    /**
+     * The batch was not accepted and is lost.
+     */
+    DISCARDED
+}
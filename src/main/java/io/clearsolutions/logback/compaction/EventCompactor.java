@@ -0,0 +1,182 @@
+package io.clearsolutions.logback.compaction;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import io.clearsolutions.logback.LogEventDTO;
+import io.clearsolutions.logback.configuration.CompactionConfiguration;
+import org.slf4j.event.KeyValuePair;
+
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Shrinks repetitive output before it is encoded.
+ * <ul>
+ *     <li>A stack trace is shipped in full once per window and tagged with its fingerprint, repeats within the window
+ *     carry only the exception class, its message and the fingerprint.</li>
+ *     <li>Identical consecutive events are merged into the first one with a "repeated N times" suffix. Identical
+ *     includes the thread, the MDC, the markers and the key-value pairs, so a merged event renders, routes and
+ *     shards like every event it stands for.</li>
+ * </ul>
+ * Only events encoded by the worker can be compacted, events encoded on append are passed through. Used by the worker
+ * thread only, so it is not thread-safe.
+ */
+public class EventCompactor {
+
+    private static final int MAX_TRACKED_STACK_TRACES = 1024;
+    private static final int MAX_CAUSE_DEPTH = 16;
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final CompactionConfiguration configuration;
+
+    // fingerprint -> timestamp of the event that shipped the full stack trace
+    private final Map<Long, Long> shippedStackTraces = new HashMap<>();
+
+    public EventCompactor(CompactionConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Compacts the event, consuming the repeats of it from the head of {@code following}.
+     */
+    public LogEventDTO compact(LogEventDTO log, Deque<LogEventDTO> following) {
+        if (log.isEncoded()) {
+            return log;
+        }
+        ILoggingEvent event = log.getEvent();
+        IThrowableProxy throwable = event.getThrowableProxy();
+        long fingerprint = isNull(throwable) ? 0 : fingerprint(throwable, 0);
+
+        int repeats = 1;
+        long lastTimestamp = event.getTimeStamp();
+        if (configuration.isCollapseRepeats()) {
+            while (nonNull(following.peek()) && isRepeat(event, fingerprint, following.peek())) {
+                lastTimestamp = following.poll().getTimestamp();
+                repeats++;
+            }
+        }
+
+        boolean tagStackTrace = nonNull(throwable) && configuration.isDeduplicateStackTraces();
+        if (repeats == 1 && ! tagStackTrace) {
+            return log;
+        }
+
+        StringBuilder message = new StringBuilder(event.getFormattedMessage());
+        boolean stackTraceOmitted = false;
+        if (tagStackTrace) {
+            stackTraceOmitted = ! shipFullStackTrace(fingerprint, event.getTimeStamp());
+            String reference = Long.toHexString(fingerprint);
+            if (stackTraceOmitted) {
+                message.append(" [").append(throwable.getClassName()).append(": ").append(throwable.getMessage())
+                       .append(", stack trace #").append(reference).append(" omitted]");
+            } else {
+                message.append(" [stack trace #").append(reference).append(']');
+            }
+        }
+        if (repeats > 1) {
+            message.append(" [repeated ").append(repeats).append(" times in ")
+                   .append(lastTimestamp - event.getTimeStamp()).append(" ms]");
+        }
+        return LogEventDTO.deferred(new CompactedLoggingEvent(event, message.toString(), stackTraceOmitted));
+    }
+
+    private boolean isRepeat(ILoggingEvent event, long fingerprint, LogEventDTO next) {
+        if (next.isEncoded()) {
+            return false;
+        }
+        ILoggingEvent nextEvent = next.getEvent();
+        IThrowableProxy throwable = event.getThrowableProxy();
+        IThrowableProxy nextThrowable = nextEvent.getThrowableProxy();
+        if (isNull(throwable) != isNull(nextThrowable)) {
+            return false;
+        }
+        return event.getLevel() == nextEvent.getLevel()
+               && Objects.equals(event.getLoggerName(), nextEvent.getLoggerName())
+               && Objects.equals(event.getFormattedMessage(), nextEvent.getFormattedMessage())
+               && Objects.equals(event.getThreadName(), nextEvent.getThreadName())
+               && Objects.equals(orEmpty(event.getMDCPropertyMap()), orEmpty(nextEvent.getMDCPropertyMap()))
+               && Objects.equals(orEmpty(event.getMarkerList()), orEmpty(nextEvent.getMarkerList()))
+               && sameKeyValuePairs(event.getKeyValuePairs(), nextEvent.getKeyValuePairs())
+               && (isNull(throwable)
+                   || Objects.equals(throwable.getMessage(), nextThrowable.getMessage())
+                      && fingerprint == fingerprint(nextThrowable, 0));
+    }
+
+    /**
+     * {@link KeyValuePair} has no {@code equals}, so the pairs are compared by key and value.
+     */
+    private static boolean sameKeyValuePairs(List<KeyValuePair> pairs, List<KeyValuePair> nextPairs) {
+        pairs = orEmpty(pairs);
+        nextPairs = orEmpty(nextPairs);
+        if (pairs.size() != nextPairs.size()) {
+            return false;
+        }
+        for (int i = 0; i < pairs.size(); i++) {
+            if (! Objects.equals(pairs.get(i).key, nextPairs.get(i).key)
+                || ! Objects.equals(pairs.get(i).value, nextPairs.get(i).value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return isNull(list) ? Collections.emptyList() : list;
+    }
+
+    private static <K, V> Map<K, V> orEmpty(Map<K, V> map) {
+        return isNull(map) ? Collections.emptyMap() : map;
+    }
+
+    /**
+     * @return {@code true} if the stack trace has not been shipped within the window and has to go out in full
+     */
+    private boolean shipFullStackTrace(long fingerprint, long timestamp) {
+        Long shippedAt = shippedStackTraces.get(fingerprint);
+        if (nonNull(shippedAt) && timestamp - shippedAt < configuration.getStackTraceWindowMillis()) {
+            return false;
+        }
+        if (shippedStackTraces.size() >= MAX_TRACKED_STACK_TRACES) {
+            shippedStackTraces.values()
+                              .removeIf(shipped -> timestamp - shipped >= configuration.getStackTraceWindowMillis());
+            if (shippedStackTraces.size() >= MAX_TRACKED_STACK_TRACES) {
+                shippedStackTraces.clear();
+            }
+        }
+        shippedStackTraces.put(fingerprint, timestamp);
+        return true;
+    }
+
+    /**
+     * Hashes exception classes and frames of the whole cause chain. Messages are left out on purpose, they often carry
+     * ids and would make every trace unique.
+     */
+    private static long fingerprint(IThrowableProxy throwable, int depth) {
+        long hash = throwable.getClassName().hashCode();
+        StackTraceElementProxy[] frames = throwable.getStackTraceElementProxyArray();
+        if (nonNull(frames)) {
+            for (StackTraceElementProxy frame : frames) {
+                hash = hash * MULTIPLIER + frame.getStackTraceElement().hashCode();
+            }
+        }
+        if (depth < MAX_CAUSE_DEPTH && ! throwable.isCyclic()) {
+            if (nonNull(throwable.getCause())) {
+                hash = hash * MULTIPLIER + fingerprint(throwable.getCause(), depth + 1);
+            }
+            if (nonNull(throwable.getSuppressed())) {
+                for (IThrowableProxy suppressed : throwable.getSuppressed()) {
+                    hash = hash * MULTIPLIER + fingerprint(suppressed, depth + 1);
+                }
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,35 @@
+package io.clearsolutions.logback.configuration;
+
+import io.clearsolutions.logback.BatchBuilder;
+
+public class BatchConfiguration {
+
+    private final long flushIntervalMillis;
+    private final int maxBatchEvents;
+    private final int maxBatchBytes;
+
+    public BatchConfiguration(long flushIntervalMillis, int maxBatchEvents, int maxBatchBytes) {
+        this.flushIntervalMillis = Math.max(flushIntervalMillis, 0);
+        this.maxBatchEvents = limit(maxBatchEvents, BatchBuilder.MAX_BATCH_EVENTS);
+        this.maxBatchBytes = limit(maxBatchBytes, BatchBuilder.MAX_BATCH_BYTES);
+    }
+
+    private int limit(int value, int max) {
+        if (value <= 0) {
+            return max;
+        }
+        return Math.min(value, max);
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public int getMaxBatchEvents() {
+        return maxBatchEvents;
+    }
+
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+}
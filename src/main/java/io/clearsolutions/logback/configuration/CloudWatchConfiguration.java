@@ -10,13 +10,18 @@ import static java.util.Objects.nonNull;
 
 public class CloudWatchConfiguration {
 
+    // the default stream name is looked up once per JVM, the instance metadata lookup can take seconds off EC2
+    private static volatile String defaultLogStreamName;
+
     private final String logGroupName;
     private final String logStreamName;
+    private final boolean logStreamNameDefined;
     private final String logRegion;
     private final String cloudWatchEndpoint;
     private final String accessKeyId;
     private final String secretAccessKey;
     private int retentionTimeInDays;
+    private final boolean createResources;
 
     public CloudWatchConfiguration(String logGroupName,
                                    String logStreamName,
@@ -24,15 +29,18 @@ public class CloudWatchConfiguration {
                                    String cloudWatchEndpoint,
                                    String accessKeyId,
                                    String secretAccessKey,
-                                   int retentionTimeInDays) {
+                                   int retentionTimeInDays,
+                                   boolean createResources) {
 
         this.logGroupName = removeUndefinedValue(createLogGroupName(logGroupName));
-        this.logStreamName = removeUndefinedValue(createLogStreamName(logStreamName));
+        this.logStreamName = removeUndefinedValue(logStreamName);
+        this.logStreamNameDefined = isNull(logStreamName) || nonNull(this.logStreamName);
         this.logRegion = removeUndefinedValue(logRegion);
         this.cloudWatchEndpoint = removeUndefinedValue(cloudWatchEndpoint);
         this.accessKeyId = removeUndefinedValue(accessKeyId);
         this.secretAccessKey = removeUndefinedValue(secretAccessKey);
         this.retentionTimeInDays = retentionTimeInDays;
+        this.createResources = createResources;
     }
 
     private String removeUndefinedValue(String value) {
@@ -44,7 +52,7 @@ public class CloudWatchConfiguration {
 
     public boolean isConfigured() {
         return nonNull(logGroupName)
-               && nonNull(logStreamName)
+               && logStreamNameDefined
                && nonNull(logRegion)
                && nonNull(accessKeyId)
                && nonNull(secretAccessKey);
@@ -60,22 +68,46 @@ public class CloudWatchConfiguration {
 
     String createLogStreamName(String logStreamName) {
         if (isNull(logStreamName)) {
-            String ec2InstanceId = EC2MetadataUtils.getInstanceId();
-            if (nonNull(ec2InstanceId)) {
-                return ec2InstanceId;
-            } else {
-                return new SimpleDateFormat("yyyyMMdd'T'HHmmss").format(new Date());
+            String name = defaultLogStreamName;
+            if (isNull(name)) {
+                synchronized (CloudWatchConfiguration.class) {
+                    name = defaultLogStreamName;
+                    if (isNull(name)) {
+                        name = lookUpDefaultLogStreamName();
+                        defaultLogStreamName = name;
+                    }
+                }
             }
+            return name;
         }
         return logStreamName;
     }
 
+    /**
+     * Uses the EC2 instance id, or the start time where there is no instance metadata service to ask. Lambda has
+     * none, so the lookup and its timeouts are skipped there.
+     */
+    private static String lookUpDefaultLogStreamName() {
+        boolean metadataAvailable = isNull(System.getenv("AWS_LAMBDA_FUNCTION_NAME"))
+                                    && ! "true".equalsIgnoreCase(System.getenv("AWS_EC2_METADATA_DISABLED"));
+        String ec2InstanceId = metadataAvailable ? EC2MetadataUtils.getInstanceId() : null;
+        if (nonNull(ec2InstanceId)) {
+            return ec2InstanceId;
+        } else {
+            return new SimpleDateFormat("yyyyMMdd'T'HHmmss").format(new Date());
+        }
+    }
+
     public String getLogGroupName() {
         return logGroupName;
     }
 
+    /**
+     * Without a configured name this looks up the default one on first use, which may block, so it is only called on
+     * the worker thread.
+     */
     public String getLogStreamName() {
-        return logStreamName;
+        return createLogStreamName(logStreamName);
     }
 
     public String getLogRegion() {
@@ -97,4 +129,11 @@ public class CloudWatchConfiguration {
     public int getRetentionTimeInDays() {
         return retentionTimeInDays;
     }
+
+    /**
+     * @return {@code false} if log groups and streams are expected to exist, so none are created at startup
+     */
+    public boolean isCreateResources() {
+        return createResources;
+    }
 }
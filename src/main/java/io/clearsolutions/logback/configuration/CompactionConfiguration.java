@@ -0,0 +1,32 @@
+package io.clearsolutions.logback.configuration;
+
+public class CompactionConfiguration {
+
+    private final boolean deduplicateStackTraces;
+    private final long stackTraceWindowMillis;
+    private final boolean collapseRepeats;
+
+    public CompactionConfiguration(boolean deduplicateStackTraces,
+                                   long stackTraceWindowMillis,
+                                   boolean collapseRepeats) {
+        this.deduplicateStackTraces = deduplicateStackTraces;
+        this.stackTraceWindowMillis = Math.max(stackTraceWindowMillis, 0);
+        this.collapseRepeats = collapseRepeats;
+    }
+
+    public boolean isEnabled() {
+        return deduplicateStackTraces || collapseRepeats;
+    }
+
+    public boolean isDeduplicateStackTraces() {
+        return deduplicateStackTraces;
+    }
+
+    public long getStackTraceWindowMillis() {
+        return stackTraceWindowMillis;
+    }
+
+    public boolean isCollapseRepeats() {
+        return collapseRepeats;
+    }
+}
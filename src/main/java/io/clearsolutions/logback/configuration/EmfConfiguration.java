@@ -0,0 +1,79 @@
+package io.clearsolutions.logback.configuration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.isNull;
+
+public class EmfConfiguration {
+
+    private static final long MIN_INTERVAL_MILLIS = 1000;
+    // CloudWatch accepts at most 30 dimensions per dimension set
+    private static final int MAX_DIMENSIONS = 30;
+
+    private final boolean emfEnabled;
+    private final String metricNamespace;
+    private final String metricMarker;
+    private final String metricKeyPrefix;
+    private final List<String> metricDimensions;
+    private final long metricIntervalMillis;
+
+    public EmfConfiguration(boolean emfEnabled,
+                            String metricNamespace,
+                            String metricMarker,
+                            String metricKeyPrefix,
+                            String metricDimensions,
+                            long metricIntervalMillis) {
+        this.emfEnabled = emfEnabled;
+        this.metricNamespace = metricNamespace;
+        this.metricMarker = metricMarker;
+        this.metricKeyPrefix = isNull(metricKeyPrefix) ? "" : metricKeyPrefix;
+        this.metricDimensions = isNull(metricDimensions)
+                                ? Collections.emptyList()
+                                : Arrays.stream(metricDimensions.split(","))
+                                        .map(String::trim)
+                                        .filter(dimension -> ! dimension.isEmpty())
+                                        .distinct()
+                                        .limit(MAX_DIMENSIONS)
+                                        .collect(Collectors.toList());
+        this.metricIntervalMillis = Math.max(metricIntervalMillis, MIN_INTERVAL_MILLIS);
+    }
+
+    public boolean isEmfEnabled() {
+        return emfEnabled;
+    }
+
+    public String getMetricNamespace() {
+        return metricNamespace;
+    }
+
+    public String getMetricMarker() {
+        return metricMarker;
+    }
+
+    public String getMetricNameKey() {
+        return metricKeyPrefix + "name";
+    }
+
+    public String getMetricValueKey() {
+        return metricKeyPrefix + "value";
+    }
+
+    public String getMetricUnitKey() {
+        return metricKeyPrefix + "unit";
+    }
+
+    public String getMetricTypeKey() {
+        return metricKeyPrefix + "type";
+    }
+
+    public List<String> getMetricDimensions() {
+        return metricDimensions;
+    }
+
+    public long getMetricIntervalMillis() {
+        return metricIntervalMillis;
+    }
+}
@@ -0,0 +1,18 @@
+package io.clearsolutions.logback.configuration;
+
+/**
+ * HTTP client of the blocking writer. The async writer always uses the Netty client, which needs the optional
+ * {@code software.amazon.awssdk:netty-nio-client} dependency.
+ */
+public enum HttpClientType {
+    /**
+     * Apache HttpClient with a connection pool, suits steady high-volume shipping. The default, always on the
+     * classpath.
+     */
+    APACHE,
+    /**
+     * The JDK's {@code HttpURLConnection}, fewer dependencies and a faster start-up. Needs the optional
+     * {@code software.amazon.awssdk:url-connection-client} dependency.
+     */
+    URL_CONNECTION
+}
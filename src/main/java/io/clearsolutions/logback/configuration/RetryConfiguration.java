@@ -0,0 +1,49 @@
+package io.clearsolutions.logback.configuration;
+
+public class RetryConfiguration {
+
+    private final int maxRetries;
+    private final long retryBaseDelayMillis;
+    private final long retryMaxDelayMillis;
+    private final long retryDeadlineMillis;
+    private final boolean adaptiveRateLimiting;
+    private final double maxRequestsPerSecond;
+
+    public RetryConfiguration(int maxRetries,
+                              long retryBaseDelayMillis,
+                              long retryMaxDelayMillis,
+                              long retryDeadlineMillis,
+                              boolean adaptiveRateLimiting,
+                              double maxRequestsPerSecond) {
+        this.maxRetries = Math.max(maxRetries, 0);
+        this.retryBaseDelayMillis = Math.max(retryBaseDelayMillis, 1);
+        this.retryMaxDelayMillis = Math.max(retryMaxDelayMillis, this.retryBaseDelayMillis);
+        this.retryDeadlineMillis = Math.max(retryDeadlineMillis, 0);
+        this.adaptiveRateLimiting = adaptiveRateLimiting;
+        this.maxRequestsPerSecond = maxRequestsPerSecond > 0 ? maxRequestsPerSecond : Double.MAX_VALUE;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getRetryBaseDelayMillis() {
+        return retryBaseDelayMillis;
+    }
+
+    public long getRetryMaxDelayMillis() {
+        return retryMaxDelayMillis;
+    }
+
+    public long getRetryDeadlineMillis() {
+        return retryDeadlineMillis;
+    }
+
+    public boolean isAdaptiveRateLimiting() {
+        return adaptiveRateLimiting;
+    }
+
+    public double getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+}
@@ -0,0 +1,39 @@
+package io.clearsolutions.logback.configuration;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import io.clearsolutions.logback.routing.Route;
+
+import java.util.List;
+
+public class RoutingConfiguration {
+
+    private final List<Route> routes;
+
+    public RoutingConfiguration(List<Route> routes) {
+        this.routes = List.copyOf(routes);
+    }
+
+    /**
+     * @return {@code 0} for the destination of the appender itself, {@code i + 1} for the i-th route; the first
+     *         matching route wins
+     */
+    public int routeOf(ILoggingEvent event) {
+        for (int i = 0; i < routes.size(); i++) {
+            if (routes.get(i).matches(event)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * @return the number of routes including the default one
+     */
+    public int getRouteCount() {
+        return routes.size() + 1;
+    }
+}
@@ -0,0 +1,50 @@
+package io.clearsolutions.logback.configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.isNull;
+
+public class ShardingConfiguration {
+
+    private final int logStreamShards;
+    private final ShardingStrategy shardingStrategy;
+    private final String shardKey;
+
+    public ShardingConfiguration(int logStreamShards, ShardingStrategy shardingStrategy, String shardKey) {
+        this.logStreamShards = Math.max(logStreamShards, 1);
+        this.shardingStrategy = isNull(shardingStrategy) ? ShardingStrategy.ROUND_ROBIN : shardingStrategy;
+        this.shardKey = shardKey;
+    }
+
+    public boolean isSharded() {
+        return logStreamShards > 1;
+    }
+
+    /**
+     * Returns the configured stream name when sharding is off, otherwise {@code <logStreamName>-0} to
+     * {@code <logStreamName>-<logStreamShards - 1>}.
+     */
+    public List<String> logStreamNames(String logStreamName) {
+        if (! isSharded()) {
+            return List.of(logStreamName);
+        }
+        List<String> names = new ArrayList<>(logStreamShards);
+        for (int i = 0; i < logStreamShards; i++) {
+            names.add(logStreamName + "-" + i);
+        }
+        return names;
+    }
+
+    public int getLogStreamShards() {
+        return logStreamShards;
+    }
+
+    public ShardingStrategy getShardingStrategy() {
+        return shardingStrategy;
+    }
+
+    public String getShardKey() {
+        return shardKey;
+    }
+}
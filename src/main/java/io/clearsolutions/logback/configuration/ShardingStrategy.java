@@ -0,0 +1,16 @@
+package io.clearsolutions.logback.configuration;
+
+public enum ShardingStrategy {
+    /**
+     * Every flushed batch goes to the next stream in turn.
+     */
+    ROUND_ROBIN,
+    /**
+     * Events of one thread always go to the same stream.
+     */
+    THREAD,
+    /**
+     * Events with the same value of the {@code shardKey} MDC entry always go to the same stream.
+     */
+    MDC
+}
@@ -0,0 +1,36 @@
+package io.clearsolutions.logback.configuration;
+
+public class ShippingConfiguration {
+
+    private final boolean asyncShipping;
+    private final int maxInFlightRequests;
+    private final int workerThreads;
+    private final boolean virtualThreads;
+
+    public ShippingConfiguration(boolean asyncShipping, int maxInFlightRequests,
+                                 int workerThreads, boolean virtualThreads) {
+        this.asyncShipping = asyncShipping;
+        this.maxInFlightRequests = Math.max(maxInFlightRequests, 1);
+        this.workerThreads = Math.max(workerThreads, 1);
+        this.virtualThreads = virtualThreads;
+    }
+
+    public boolean isAsyncShipping() {
+        return asyncShipping;
+    }
+
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    /**
+     * @return the number of workers, all of them draining the same queue
+     */
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+}
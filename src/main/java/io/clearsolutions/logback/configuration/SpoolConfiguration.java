@@ -0,0 +1,34 @@
+package io.clearsolutions.logback.configuration;
+
+import static java.util.Objects.nonNull;
+
+public class SpoolConfiguration {
+
+    private static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private final String spoolDirectory;
+    private final int spoolSegmentSize;
+    private final long maxSpoolSize;
+
+    public SpoolConfiguration(String spoolDirectory, int spoolSegmentSize, long maxSpoolSize) {
+        this.spoolDirectory = spoolDirectory;
+        this.spoolSegmentSize = Math.max(spoolSegmentSize, MIN_SEGMENT_SIZE);
+        this.maxSpoolSize = Math.max(maxSpoolSize, this.spoolSegmentSize);
+    }
+
+    public boolean isEnabled() {
+        return nonNull(spoolDirectory) && ! spoolDirectory.isBlank();
+    }
+
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public int getSpoolSegmentSize() {
+        return spoolSegmentSize;
+    }
+
+    public long getMaxSpoolSize() {
+        return maxSpoolSize;
+    }
+}
@@ -0,0 +1,78 @@
+package io.clearsolutions.logback.configuration;
+
+public class TransportConfiguration {
+
+    private final HttpClientType httpClientType;
+    private final int maxConnections;
+    private final long connectionTimeoutMillis;
+    private final long socketTimeoutMillis;
+    private final long apiCallTimeoutMillis;
+    private final long apiCallAttemptTimeoutMillis;
+    private final boolean tcpKeepAlive;
+    private final long connectionMaxIdleMillis;
+    private final boolean gzipCompression;
+    private final int compressionThresholdBytes;
+
+    public TransportConfiguration(HttpClientType httpClientType, int maxConnections,
+                                  long connectionTimeoutMillis, long socketTimeoutMillis,
+                                  long apiCallTimeoutMillis, long apiCallAttemptTimeoutMillis,
+                                  boolean tcpKeepAlive, long connectionMaxIdleMillis,
+                                  boolean gzipCompression, int compressionThresholdBytes) {
+        this.httpClientType = httpClientType;
+        this.maxConnections = Math.max(maxConnections, 1);
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+        this.socketTimeoutMillis = socketTimeoutMillis;
+        this.apiCallTimeoutMillis = apiCallTimeoutMillis;
+        this.apiCallAttemptTimeoutMillis = apiCallAttemptTimeoutMillis;
+        this.tcpKeepAlive = tcpKeepAlive;
+        this.connectionMaxIdleMillis = connectionMaxIdleMillis;
+        this.gzipCompression = gzipCompression;
+        this.compressionThresholdBytes = Math.max(compressionThresholdBytes, 0);
+    }
+
+    public HttpClientType getHttpClientType() {
+        return httpClientType;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public long getConnectionTimeoutMillis() {
+        return connectionTimeoutMillis;
+    }
+
+    public long getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    /**
+     * @return the time limit of one call including all its attempts, 0 or less means no limit
+     */
+    public long getApiCallTimeoutMillis() {
+        return apiCallTimeoutMillis;
+    }
+
+    /**
+     * @return the time limit of a single HTTP attempt, 0 or less means no limit
+     */
+    public long getApiCallAttemptTimeoutMillis() {
+        return apiCallAttemptTimeoutMillis;
+    }
+
+    public boolean isTcpKeepAlive() {
+        return tcpKeepAlive;
+    }
+
+    public long getConnectionMaxIdleMillis() {
+        return connectionMaxIdleMillis;
+    }
+
+    public boolean isGzipCompression() {
+        return gzipCompression;
+    }
+
+    public int getCompressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+}
@@ -0,0 +1,289 @@
+package io.clearsolutions.logback.emf;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import io.clearsolutions.logback.configuration.EmfConfiguration;
+import io.clearsolutions.logback.util.JsonWriter;
+import org.slf4j.Marker;
+import org.slf4j.event.KeyValuePair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Turns metric observations logged as events into CloudWatch Embedded Metric Format documents.
+ * <p>
+ * An event is an observation if it carries the configured marker or a {@code <prefix>name} key-value pair. A marked
+ * event without a name uses its message as the metric name. {@code <prefix>value} is the observed value,
+ * {@code <prefix>unit} its CloudWatch unit and {@code <prefix>type} is either {@code counter} or {@code histogram};
+ * an observation without a value counts 1, one with a value is a histogram by default. The MDC is not looked at for
+ * these keys, it applies to every log line of its scope. The configured dimensions present on the event, in its
+ * key-value pairs or its MDC, make up its dimension set. An event whose value is not a finite number is logged as
+ * is, EMF has no representation for NaN or infinity.
+ * <p>
+ * Observations are aggregated on the logging thread and never enter the queue. Once per interval {@link #flush} emits
+ * one document per dimension set: counters as their sum and histograms as the observed values. A histogram with more
+ * than 100 observations is written as {@code {"Values":[...],"Counts":[...],"Max":..,"Min":..,"Count":..,"Sum":..}},
+ * the form the CloudWatch agent uses: the values are a uniform sample of 100, each weighted to stand for its share of
+ * the observations, so percentiles are estimated while SampleCount, Sum, Minimum and Maximum stay exact.
+ *
+ * @see <a href="https://docs.aws.amazon.com/AmazonCloudWatch/latest/monitoring/CloudWatch_Embedded_Metric_Format_Specification.html">EMF specification</a>
+ */
+public class MetricAggregator {
+
+    private static final int MAX_METRICS_PER_DOCUMENT = 100;
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_VALUE_BYTES = 1024;
+    private static final Set<String> UNITS = Set.of(
+        "Seconds", "Microseconds", "Milliseconds", "Bytes", "Kilobytes", "Megabytes", "Gigabytes", "Terabytes",
+        "Bits", "Kilobits", "Megabits", "Gigabits", "Terabits", "Percent", "Count", "Bytes/Second",
+        "Kilobytes/Second", "Megabytes/Second", "Gigabytes/Second", "Terabytes/Second", "Bits/Second",
+        "Kilobits/Second", "Megabits/Second", "Gigabits/Second", "Terabits/Second", "Count/Second", "None");
+
+    private final EmfConfiguration configuration;
+    private final Map<MetricKey, MetricStats> metrics = new ConcurrentHashMap<>();
+    private final JsonWriter writer = new JsonWriter();
+
+    public MetricAggregator(EmfConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Records the event if it is a metric observation.
+     *
+     * @return {@code true} if the event was consumed as an observation and should not be logged
+     */
+    public boolean record(ILoggingEvent event) {
+        Object name = keyValue(event, configuration.getMetricNameKey());
+        if (isNull(name)) {
+            if (! isMarked(event)) {
+                return false;
+            }
+            name = event.getFormattedMessage();
+        }
+        String metricName = name.toString();
+        if (metricName.isBlank()) {
+            return false;
+        }
+        if (metricName.length() > MAX_NAME_LENGTH) {
+            metricName = metricName.substring(0, MAX_NAME_LENGTH);
+        }
+
+        Object rawValue = keyValue(event, configuration.getMetricValueKey());
+        double value;
+        if (isNull(rawValue)) {
+            value = 1;
+        } else if (rawValue instanceof Number) {
+            value = ((Number) rawValue).doubleValue();
+        } else {
+            try {
+                value = Double.parseDouble(rawValue.toString());
+            } catch (NumberFormatException e) {
+                // not a usable observation, let it be logged as is
+                return false;
+            }
+        }
+        if (! Double.isFinite(value)) {
+            return false;
+        }
+
+        MetricType type = typeOf(keyValue(event, configuration.getMetricTypeKey()), nonNull(rawValue));
+        String unit = unitOf(keyValue(event, configuration.getMetricUnitKey()), type);
+        int dimensions = configuration.getMetricDimensions().size();
+        MetricKey key = new MetricKey(new ArrayList<>(dimensions), new ArrayList<>(dimensions), metricName);
+        for (String dimension : configuration.getMetricDimensions()) {
+            Object dimensionValue = lookup(event, dimension);
+            if (nonNull(dimensionValue)) {
+                key.getDimensionNames().add(dimension);
+                key.getDimensionValues().add(dimensionValue.toString());
+            }
+        }
+
+        while (true) {
+            MetricStats stats = metrics.computeIfAbsent(key, k -> new MetricStats(type, unit));
+            if (stats.record(value)) {
+                return true;
+            }
+            // retired by a concurrent flush, the next round creates new stats
+            metrics.remove(key, stats);
+        }
+    }
+
+    /**
+     * Takes the observations of the interval that just ended and renders them as EMF documents. Only one thread may
+     * flush at a time.
+     */
+    public List<byte[]> flush(long timestampMillis) {
+        Map<MetricKey, List<Map.Entry<String, MetricStats.Snapshot>>> dimensionSets = new LinkedHashMap<>();
+        for (Map.Entry<MetricKey, MetricStats> entry : metrics.entrySet()) {
+            MetricStats.Snapshot snapshot = entry.getValue().takeSnapshot();
+            if (isNull(snapshot)) {
+                metrics.remove(entry.getKey(), entry.getValue());
+                continue;
+            }
+            dimensionSets.computeIfAbsent(entry.getKey().dimensionSet(), dimensionSet -> new ArrayList<>())
+                         .add(Map.entry(entry.getKey().getName(), snapshot));
+        }
+
+        List<byte[]> documents = new ArrayList<>();
+        dimensionSets.forEach((dimensionSet, snapshots) -> {
+            for (int from = 0; from < snapshots.size(); from += MAX_METRICS_PER_DOCUMENT) {
+                int to = Math.min(from + MAX_METRICS_PER_DOCUMENT, snapshots.size());
+                documents.add(writeDocument(timestampMillis, dimensionSet, snapshots.subList(from, to)));
+            }
+        });
+        return documents;
+    }
+
+    public long getIntervalMillis() {
+        return configuration.getMetricIntervalMillis();
+    }
+
+    private byte[] writeDocument(long timestampMillis,
+                                 MetricKey dimensionSet,
+                                 List<Map.Entry<String, MetricStats.Snapshot>> snapshots) {
+        writer.reset()
+              .writeAscii("{\"_aws\":{\"Timestamp\":").writeLong(timestampMillis)
+              .writeAscii(",\"CloudWatchMetrics\":[{\"Namespace\":")
+              .writeString(configuration.getMetricNamespace(), MAX_VALUE_BYTES)
+              .writeAscii(",\"Dimensions\":[[");
+        List<String> dimensionNames = dimensionSet.getDimensionNames();
+        for (int i = 0; i < dimensionNames.size(); i++) {
+            if (i > 0) {
+                writer.writeByte(',');
+            }
+            writer.writeString(dimensionNames.get(i), MAX_VALUE_BYTES);
+        }
+        writer.writeAscii("]],\"Metrics\":[");
+        for (int i = 0; i < snapshots.size(); i++) {
+            if (i > 0) {
+                writer.writeByte(',');
+            }
+            writer.writeAscii("{\"Name\":").writeString(snapshots.get(i).getKey(), MAX_VALUE_BYTES)
+                  .writeAscii(",\"Unit\":\"").writeAscii(snapshots.get(i).getValue().getUnit())
+                  .writeAscii("\"}");
+        }
+        writer.writeAscii("]}]}");
+
+        for (int i = 0; i < dimensionNames.size(); i++) {
+            writer.writeByte(',')
+                  .writeString(dimensionNames.get(i), MAX_VALUE_BYTES)
+                  .writeByte(':')
+                  .writeString(dimensionSet.getDimensionValues().get(i), MAX_VALUE_BYTES);
+        }
+        for (Map.Entry<String, MetricStats.Snapshot> entry : snapshots) {
+            writer.writeByte(',').writeString(entry.getKey(), MAX_VALUE_BYTES).writeByte(':');
+            MetricStats.Snapshot snapshot = entry.getValue();
+            if (snapshot.getType() == MetricType.COUNTER) {
+                writer.writeDouble(snapshot.getSum());
+            } else if (snapshot.isSampled()) {
+                writeSample(snapshot);
+            } else {
+                writeValues(snapshot.getValues(), snapshot.getValues().length);
+            }
+        }
+        return writer.writeByte('}').toByteArray();
+    }
+
+    private void writeSample(MetricStats.Snapshot snapshot) {
+        double[] values = snapshot.getValues().clone();
+        Arrays.sort(values);
+        double[] counts = new double[values.length];
+        double weight = (double) snapshot.getCount() / values.length;
+        // equal sampled values share one entry
+        int distinct = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (distinct > 0 && values[distinct - 1] == values[i]) {
+                counts[distinct - 1] += weight;
+            } else {
+                values[distinct] = values[i];
+                counts[distinct++] = weight;
+            }
+        }
+        writer.writeAscii("{\"Values\":");
+        writeValues(values, distinct);
+        writer.writeAscii(",\"Counts\":");
+        writeValues(counts, distinct);
+        writer.writeAscii(",\"Max\":").writeDouble(snapshot.getMax())
+              .writeAscii(",\"Min\":").writeDouble(snapshot.getMin())
+              .writeAscii(",\"Count\":").writeLong(snapshot.getCount())
+              .writeAscii(",\"Sum\":").writeDouble(snapshot.getSum())
+              .writeByte('}');
+    }
+
+    private void writeValues(double[] values, int length) {
+        writer.writeByte('[');
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                writer.writeByte(',');
+            }
+            writer.writeDouble(values[i]);
+        }
+        writer.writeByte(']');
+    }
+
+    private boolean isMarked(ILoggingEvent event) {
+        List<Marker> markers = event.getMarkerList();
+        if (isNull(markers) || isNull(configuration.getMetricMarker())) {
+            return false;
+        }
+        for (Marker marker : markers) {
+            if (marker.contains(configuration.getMetricMarker())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Looks the key up in the key-value pairs of the event first and in its MDC second.
+     */
+    private static Object lookup(ILoggingEvent event, String key) {
+        Object value = keyValue(event, key);
+        if (nonNull(value)) {
+            return value;
+        }
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        return isNull(mdc) ? null : mdc.get(key);
+    }
+
+    private static Object keyValue(ILoggingEvent event, String key) {
+        List<KeyValuePair> keyValuePairs = event.getKeyValuePairs();
+        if (nonNull(keyValuePairs)) {
+            for (KeyValuePair keyValuePair : keyValuePairs) {
+                if (key.equals(keyValuePair.key)) {
+                    return keyValuePair.value;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static MetricType typeOf(Object type, boolean hasValue) {
+        if (nonNull(type)) {
+            String name = type.toString().trim().toUpperCase(Locale.ROOT);
+            if (name.equals(MetricType.COUNTER.name()) || name.equals(MetricType.HISTOGRAM.name())) {
+                return MetricType.valueOf(name);
+            }
+        }
+        return hasValue ? MetricType.HISTOGRAM : MetricType.COUNTER;
+    }
+
+    /**
+     * An unknown unit would make CloudWatch reject the whole document, so it is replaced with {@code None}.
+     */
+    private static String unitOf(Object unit, MetricType type) {
+        if (nonNull(unit) && UNITS.contains(unit.toString())) {
+            return unit.toString();
+        }
+        return type == MetricType.COUNTER ? "Count" : "None";
+    }
+}
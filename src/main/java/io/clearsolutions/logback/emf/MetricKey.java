@@ -0,0 +1,59 @@
+package io.clearsolutions.logback.emf;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A metric within one dimension set. Dimension values are kept in the order of the configured dimension names, and
+ * only the dimensions present on the event are part of the set.
+ */
+class MetricKey {
+
+    private final List<String> dimensionNames;
+    private final List<String> dimensionValues;
+    private final String name;
+
+    MetricKey(List<String> dimensionNames, List<String> dimensionValues, String name) {
+        this.dimensionNames = dimensionNames;
+        this.dimensionValues = dimensionValues;
+        this.name = name;
+    }
+
+    List<String> getDimensionNames() {
+        return dimensionNames;
+    }
+
+    List<String> getDimensionValues() {
+        return dimensionValues;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return the key of the EMF document this metric goes into
+     */
+    MetricKey dimensionSet() {
+        return new MetricKey(dimensionNames, dimensionValues, null);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MetricKey metricKey = (MetricKey) o;
+        return dimensionNames.equals(metricKey.dimensionNames)
+               && dimensionValues.equals(metricKey.dimensionValues)
+               && Objects.equals(name, metricKey.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dimensionNames, dimensionValues, name);
+    }
+}
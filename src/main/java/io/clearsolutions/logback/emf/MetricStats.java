@@ -0,0 +1,133 @@
+package io.clearsolutions.logback.emf;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Observations of one metric within the current interval. Logging threads record into it concurrently, the worker
+ * takes a snapshot and resets it once per interval.
+ */
+class MetricStats {
+
+    // EMF accepts at most 100 values per metric
+    static final int MAX_VALUES = 100;
+
+    private final MetricType type;
+    private final String unit;
+    private final double[] values;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    // set when the metric was idle for a whole interval and is being removed, recorders then start a new instance
+    private boolean retired;
+
+    MetricStats(MetricType type, String unit) {
+        this.type = type;
+        this.unit = unit;
+        this.values = type == MetricType.HISTOGRAM ? new double[MAX_VALUES] : null;
+    }
+
+    /**
+     * @return {@code false} if the instance was retired and the observation has to be recorded into a new one
+     */
+    synchronized boolean record(double value) {
+        if (retired) {
+            return false;
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (type == MetricType.HISTOGRAM) {
+            // reservoir sampling keeps a uniform sample of the distribution once there are more than MAX_VALUES
+            long slot = count <= MAX_VALUES ? count - 1 : ThreadLocalRandom.current().nextLong(count);
+            if (slot < MAX_VALUES) {
+                values[(int) slot] = value;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the observations of the interval, or {@code null} if there were none, in which case the instance is
+     *         retired
+     */
+    synchronized Snapshot takeSnapshot() {
+        if (count == 0) {
+            retired = true;
+            return null;
+        }
+        Snapshot snapshot = new Snapshot(type,
+                                         unit,
+                                         count,
+                                         sum,
+                                         min,
+                                         max,
+                                         type == MetricType.HISTOGRAM
+                                         ? Arrays.copyOf(values, (int) Math.min(count, MAX_VALUES))
+                                         : null);
+        count = 0;
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        return snapshot;
+    }
+
+    static class Snapshot {
+
+        private final MetricType type;
+        private final String unit;
+        private final long count;
+        private final double sum;
+        private final double min;
+        private final double max;
+        private final double[] values;
+
+        Snapshot(MetricType type, String unit, long count, double sum, double min, double max, double[] values) {
+            this.type = type;
+            this.unit = unit;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+            this.values = values;
+        }
+
+        MetricType getType() {
+            return type;
+        }
+
+        String getUnit() {
+            return unit;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        double getSum() {
+            return sum;
+        }
+
+        double getMin() {
+            return min;
+        }
+
+        double getMax() {
+            return max;
+        }
+
+        /**
+         * @return {@code true} if there were more observations than {@link #getValues()} holds
+         */
+        boolean isSampled() {
+            return type == MetricType.HISTOGRAM && count > values.length;
+        }
+
+        double[] getValues() {
+            return values;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.clearsolutions.logback.emf;
+
+public enum MetricType {
+
+    /**
+     * Observations are summed up and shipped as a single value per interval.
+     */
+    COUNTER,
+
+    /**
+     * Observations keep their distribution, so CloudWatch can compute percentiles of them.
+     */
+    HISTOGRAM
+}
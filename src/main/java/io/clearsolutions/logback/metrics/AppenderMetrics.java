@@ -0,0 +1,203 @@
+package io.clearsolutions.logback.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters, gauges and histograms of one appender instance: what was queued, dropped and spooled, how batches look
+ * and how CloudWatch responds. Exposed over JMX and forwarded to the registered {@link MetricsListener}s.
+ */
+public class AppenderMetrics implements AppenderMetricsMBean {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder enqueuedEvents = new LongAdder();
+    private final LongAdder discardedEvents = new LongAdder();
+    private final LongAdder spooledEvents = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder throttles = new LongAdder();
+    private final LongAdder adjustedTimestamps = new LongAdder();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final Histogram batchEvents = new Histogram();
+    private final Histogram batchBytes = new Histogram();
+    private final Histogram requestLatency = new Histogram();
+
+    private volatile IntSupplier queueDepth = () -> 0;
+    private volatile IntSupplier queueCapacity = () -> 0;
+    private volatile LongSupplier pendingSpooledEvents = () -> 0;
+
+    public void addListener(MetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void bindQueue(IntSupplier queueDepth, IntSupplier queueCapacity) {
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void bindSpool(LongSupplier pendingSpooledEvents) {
+        this.pendingSpooledEvents = pendingSpooledEvents;
+    }
+
+    public void eventEnqueued() {
+        enqueuedEvents.increment();
+        listeners.forEach(MetricsListener::onEventEnqueued);
+    }
+
+    public void eventsDiscarded(int events) {
+        discardedEvents.add(events);
+        listeners.forEach(listener -> listener.onEventsDiscarded(events));
+    }
+
+    public void eventsSpooled(int events) {
+        spooledEvents.add(events);
+        listeners.forEach(listener -> listener.onEventsSpooled(events));
+    }
+
+    public void batch(int events, int bytes) {
+        batchEvents.record(events);
+        batchBytes.record(bytes);
+        listeners.forEach(listener -> listener.onBatch(events, bytes));
+    }
+
+    /**
+     * @return the start time to pass to {@link #requestCompleted(long, boolean)}
+     */
+    public long requestStarted() {
+        inFlightRequests.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void requestCompleted(long startNanos, boolean success) {
+        long latencyNanos = System.nanoTime() - startNanos;
+        inFlightRequests.decrementAndGet();
+        requestLatency.record(latencyNanos);
+        if (! success) {
+            failedRequests.increment();
+        }
+        listeners.forEach(listener -> listener.onRequest(latencyNanos, success));
+    }
+
+    public void retry() {
+        retries.increment();
+        listeners.forEach(MetricsListener::onRetry);
+    }
+
+    public void throttled() {
+        throttles.increment();
+        listeners.forEach(MetricsListener::onThrottled);
+    }
+
+    public void timestampsAdjusted(int events) {
+        adjustedTimestamps.add(events);
+        listeners.forEach(listener -> listener.onTimestampsAdjusted(events));
+    }
+
+    @Override
+    public long getEnqueuedEvents() {
+        return enqueuedEvents.sum();
+    }
+
+    @Override
+    public long getDiscardedEvents() {
+        return discardedEvents.sum();
+    }
+
+    @Override
+    public long getSpooledEvents() {
+        return spooledEvents.sum();
+    }
+
+    @Override
+    public long getPendingSpooledEvents() {
+        return pendingSpooledEvents.getAsLong();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity.getAsInt();
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    @Override
+    public long getBatches() {
+        return batchEvents.getCount();
+    }
+
+    @Override
+    public double getBatchEventsMean() {
+        return batchEvents.getMean();
+    }
+
+    @Override
+    public long getBatchEventsMax() {
+        return batchEvents.getMax();
+    }
+
+    @Override
+    public double getBatchBytesMean() {
+        return batchBytes.getMean();
+    }
+
+    @Override
+    public long getBatchBytesMax() {
+        return batchBytes.getMax();
+    }
+
+    @Override
+    public long getRequests() {
+        return requestLatency.getCount();
+    }
+
+    @Override
+    public long getFailedRequests() {
+        return failedRequests.sum();
+    }
+
+    @Override
+    public double getRequestLatencyMillisMean() {
+        return requestLatency.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRequestLatencyMillisP99() {
+        return requestLatency.getPercentile(0.99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRequestLatencyMillisMax() {
+        return requestLatency.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getThrottles() {
+        return throttles.sum();
+    }
+
+    @Override
+    public long getAdjustedTimestamps() {
+        return adjustedTimestamps.sum();
+    }
+}
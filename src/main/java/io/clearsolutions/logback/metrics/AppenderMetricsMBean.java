@@ -0,0 +1,52 @@
+package io.clearsolutions.logback.metrics;
+
+/**
+ * JMX view of {@link AppenderMetrics}, registered as
+ * {@code io.clearsolutions.logback:type=CloudWatchAppender,name=<appender name>}.
+ */
+public interface AppenderMetricsMBean {
+
+    long getEnqueuedEvents();
+
+    long getDiscardedEvents();
+
+    long getSpooledEvents();
+
+    long getPendingSpooledEvents();
+
+    int getQueueDepth();
+
+    int getQueueCapacity();
+
+    int getInFlightRequests();
+
+    long getBatches();
+
+    double getBatchEventsMean();
+
+    long getBatchEventsMax();
+
+    double getBatchBytesMean();
+
+    long getBatchBytesMax();
+
+    long getRequests();
+
+    long getFailedRequests();
+
+    double getRequestLatencyMillisMean();
+
+    double getRequestLatencyMillisP99();
+
+    double getRequestLatencyMillisMax();
+
+    long getRetries();
+
+    long getThrottles();
+
+    /**
+     * @return the number of events whose timestamp was out of the range CloudWatch accepts and was set to the time
+     * they were shipped instead
+     */
+    long getAdjustedTimestamps();
+}
@@ -0,0 +1,63 @@
+package io.clearsolutions.logback.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram with power-of-two buckets: cheap enough to record on every batch and request, and precise
+ * enough to tell a 10 ms request from a 1 s one.
+ */
+public class Histogram {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+    // bucket i holds values in [2^(i-1), 2^i), bucket 0 holds zero
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+
+    public void record(long value) {
+        long positive = Math.max(value, 0);
+        count.increment();
+        sum.add(positive);
+        max.accumulate(positive);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(positive));
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long samples = count.sum();
+        return samples == 0 ? 0 : (double) sum.sum() / samples;
+    }
+
+    /**
+     * @param quantile a value between 0 and 1
+     * @return the upper bound of the bucket the quantile falls into
+     */
+    public long getPercentile(double quantile) {
+        long samples = count.sum();
+        if (samples == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * samples);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return i == 0 ? 0 : Math.min((1L << i) - 1, getMax());
+            }
+        }
+        return getMax();
+    }
+}
@@ -0,0 +1,33 @@
+package io.clearsolutions.logback.metrics;
+
+/**
+ * Receives the appender's measurements as they happen, e.g. to bridge them to Micrometer. Callbacks run on the
+ * logging threads, the worker thread and the SDK completion threads, so implementations must be thread-safe and
+ * cheap. Configure with {@code <metricsListener class="..."/>}.
+ */
+public interface MetricsListener {
+
+    default void onEventEnqueued() {
+    }
+
+    default void onEventsDiscarded(int events) {
+    }
+
+    default void onEventsSpooled(int events) {
+    }
+
+    default void onBatch(int events, int bytes) {
+    }
+
+    default void onRequest(long latencyNanos, boolean success) {
+    }
+
+    default void onRetry() {
+    }
+
+    default void onThrottled() {
+    }
+
+    default void onTimestampsAdjusted(int events) {
+    }
+}
@@ -0,0 +1,45 @@
+package io.clearsolutions.logback.overflow;
+
+import ch.qos.logback.classic.Level;
+import io.clearsolutions.logback.LogEventDTO;
+import io.clearsolutions.logback.queue.RingBufferQueue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Applies backpressure to the logging thread: waits for free space for at most the timeout, then discards the event.
+ */
+public class BlockPolicy implements OverflowPolicy {
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long timeoutNanos;
+
+    public BlockPolicy(long timeoutMillis) {
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(timeoutMillis, 0));
+    }
+
+    @Override
+    public boolean offer(RingBufferQueue<LogEventDTO> logs, LogEventDTO log, Level level,
+                         Consumer<LogEventDTO> discarded) {
+        if (logs.offer(log)) {
+            return true;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        long parkNanos = 1000;
+        while (! Thread.currentThread().isInterrupted()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(parkNanos, remaining));
+            if (logs.offer(log)) {
+                return true;
+            }
+            parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+        }
+        return false;
+    }
+}
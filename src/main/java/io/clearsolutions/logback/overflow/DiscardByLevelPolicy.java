@@ -0,0 +1,28 @@
+package io.clearsolutions.logback.overflow;
+
+import ch.qos.logback.classic.Level;
+import io.clearsolutions.logback.LogEventDTO;
+import io.clearsolutions.logback.queue.RingBufferQueue;
+
+import java.util.function.Consumer;
+
+/**
+ * Reserves the last {@code discardingThreshold} slots of the queue for WARN and ERROR events.
+ */
+public class DiscardByLevelPolicy implements OverflowPolicy {
+
+    private final int discardingThreshold;
+
+    public DiscardByLevelPolicy(int discardingThreshold) {
+        this.discardingThreshold = discardingThreshold;
+    }
+
+    @Override
+    public boolean offer(RingBufferQueue<LogEventDTO> logs, LogEventDTO log, Level level,
+                         Consumer<LogEventDTO> discarded) {
+        if (level.toInt() <= Level.INFO_INT && logs.remainingCapacity() < discardingThreshold) {
+            return false;
+        }
+        return logs.offer(log);
+    }
+}
@@ -0,0 +1,16 @@
+package io.clearsolutions.logback.overflow;
+
+import ch.qos.logback.classic.Level;
+import io.clearsolutions.logback.LogEventDTO;
+import io.clearsolutions.logback.queue.RingBufferQueue;
+
+import java.util.function.Consumer;
+
+public class DropNewestPolicy implements OverflowPolicy {
+
+    @Override
+    public boolean offer(RingBufferQueue<LogEventDTO> logs, LogEventDTO log, Level level,
+                         Consumer<LogEventDTO> discarded) {
+        return logs.offer(log);
+    }
+}
@@ -0,0 +1,33 @@
+package io.clearsolutions.logback.overflow;
+
+import ch.qos.logback.classic.Level;
+import io.clearsolutions.logback.LogEventDTO;
+import io.clearsolutions.logback.queue.RingBufferQueue;
+
+import java.util.function.Consumer;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Keeps the most recent events: when the queue is full the oldest event is evicted to make room for the new one.
+ */
+public class DropOldestPolicy implements OverflowPolicy {
+
+    private static final int MAX_ATTEMPTS = 16;
+
+    @Override
+    public boolean offer(RingBufferQueue<LogEventDTO> logs, LogEventDTO log, Level level,
+                         Consumer<LogEventDTO> discarded) {
+        // other producers may take the freed slot first, so give up after a few rounds instead of spinning
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && ! logs.isClosed(); attempt++) {
+            if (logs.offer(log)) {
+                return true;
+            }
+            LogEventDTO oldest = logs.poll();
+            if (nonNull(oldest)) {
+                discarded.accept(oldest);
+            }
+        }
+        return logs.offer(log);
+    }
+}
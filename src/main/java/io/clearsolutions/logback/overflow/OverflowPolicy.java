@@ -0,0 +1,25 @@
+package io.clearsolutions.logback.overflow;
+
+import ch.qos.logback.classic.Level;
+import io.clearsolutions.logback.LogEventDTO;
+import io.clearsolutions.logback.queue.RingBufferQueue;
+
+import java.util.function.Consumer;
+
+/**
+ * Decides what happens to an event when the ingestion queue is full or close to full. A custom implementation can
+ * be configured with {@code <overflowPolicy class="..."/>}.
+ */
+public interface OverflowPolicy {
+
+    /**
+     * Offers the event to the queue.
+     *
+     * @param logs      the ingestion queue
+     * @param log       the event to queue
+     * @param level     the level of the event
+     * @param discarded receives every other event the policy removes from the queue to make room
+     * @return {@code true} if the event was queued, {@code false} if it was discarded
+     */
+    boolean offer(RingBufferQueue<LogEventDTO> logs, LogEventDTO log, Level level, Consumer<LogEventDTO> discarded);
+}
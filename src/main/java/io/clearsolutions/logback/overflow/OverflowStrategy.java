@@ -0,0 +1,25 @@
+package io.clearsolutions.logback.overflow;
+
+public enum OverflowStrategy {
+    /**
+     * Discards the event that does not fit.
+     */
+    DROP_NEWEST,
+    /**
+     * Makes the logging thread wait up to {@code blockTimeoutMillis} for free space.
+     */
+    BLOCK,
+    /**
+     * Evicts the oldest queued event to make room.
+     */
+    DROP_OLDEST,
+    /**
+     * Discards TRACE, DEBUG and INFO events once less than {@code discardingThreshold} slots are free, the same way
+     * logback's {@code AsyncAppender} does.
+     */
+    DISCARD_BY_LEVEL,
+    /**
+     * Keeps each event with probability {@code sampleRate} once less than {@code discardingThreshold} slots are free.
+     */
+    SAMPLE
+}
@@ -0,0 +1,33 @@
+package io.clearsolutions.logback.overflow;
+
+import ch.qos.logback.classic.Level;
+import io.clearsolutions.logback.LogEventDTO;
+import io.clearsolutions.logback.queue.RingBufferQueue;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Once less than {@code discardingThreshold} slots are free, keeps every event with probability {@code sampleRate},
+ * so under overload the queue still receives a representative share of all loggers instead of only the first ones.
+ */
+public class SamplingPolicy implements OverflowPolicy {
+
+    private final int discardingThreshold;
+    private final double sampleRate;
+
+    public SamplingPolicy(int discardingThreshold, double sampleRate) {
+        this.discardingThreshold = discardingThreshold;
+        this.sampleRate = Math.min(Math.max(sampleRate, 0), 1);
+    }
+
+    @Override
+    public boolean offer(RingBufferQueue<LogEventDTO> logs, LogEventDTO log, Level level,
+                         Consumer<LogEventDTO> discarded) {
+        if (logs.remainingCapacity() < discardingThreshold
+            && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return false;
+        }
+        return logs.offer(log);
+    }
+}
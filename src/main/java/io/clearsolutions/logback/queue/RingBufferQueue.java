@@ -0,0 +1,284 @@
+package io.clearsolutions.logback.queue;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bounded lock-free ring buffer used as the ingestion queue of the appender.
+ * <p>
+ * Producers claim a slot with a single CAS on the tail counter and publish the element through the slot sequence,
+ * so logging threads never block each other on a lock (D. Vyukov's bounded MPMC queue). The consumer side is also
+ * lock-free, which lets producers evict the oldest element when the buffer is full, while {@link #drainTo} claims a
+ * whole run of published slots with one CAS.
+ * <p>
+ * Any number of consumers may wait in {@link #take()} or {@link #poll(long, TimeUnit)}. Producers unpark them after
+ * publishing and only look for waiting consumers when there are any, so idle consumers cost nothing. {@link #close()}
+ * wakes every consumer up for good: once the queue is closed and empty, both methods return {@code null} without
+ * waiting.
+ * <p>
+ * Closing sets the sign bit of the tail counter, so a producer either claims its slot before the queue is closed, and
+ * the element is counted by {@link #size()} until it is taken, or fails its CAS and is rejected. No element can be
+ * published unseen after the consumer drained the closed queue.
+ *
+ * @param <E> the type of queued elements
+ */
+public class RingBufferQueue<E> {
+
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final int capacity;
+    private final int mask;
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new PaddedAtomicLong();
+    private final AtomicLong head = new PaddedAtomicLong();
+
+    // producers read the count and look into the set only if it is not zero
+    private final Set<Thread> waitingConsumers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger waitingConsumerCount = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * @param capacity requested capacity, rounded up to the next power of two
+     */
+    public RingBufferQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity == 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.buffer = new Object[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Inserts the element if there is free space.
+     *
+     * @return {@code true} if the element was added, {@code false} if the buffer is full or closed
+     */
+    public boolean offer(E element) {
+        requireNonNull(element);
+        long position = tail.get();
+        while (true) {
+            if ((position & CLOSED) != 0) {
+                return false;
+            }
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer[index] = element;
+                    sequences.set(index, position + 1);
+                    signalConsumers();
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element without waiting.
+     *
+     * @return the oldest element or {@code null} if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    return (E) release(index, position);
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element, waiting up to the given time for one to be published.
+     *
+     * @return the oldest element or {@code null} if the timeout elapsed or the queue was closed first
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E element = poll();
+        if (nonNull(element)) {
+            return element;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        startWaiting();
+        try {
+            while (true) {
+                // re-check after registering, a producer that missed the registration has published already
+                element = poll();
+                if (nonNull(element)) {
+                    return element;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || closed && isEmpty()) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            stopWaiting();
+        }
+    }
+
+    /**
+     * Removes the oldest element, waiting for as long as it takes for one to be published.
+     *
+     * @return the oldest element or {@code null} if the queue is closed and empty
+     */
+    public E take() throws InterruptedException {
+        E element = poll();
+        if (nonNull(element)) {
+            return element;
+        }
+        startWaiting();
+        try {
+            while (true) {
+                element = poll();
+                // a closed queue that is not empty has a slot claimed before the close, it is published shortly
+                if (nonNull(element) || closed && isEmpty()) {
+                    return element;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            stopWaiting();
+        }
+    }
+
+    /**
+     * Moves up to {@code maxElements} of the oldest elements to the target collection, claiming all of them with a
+     * single update of the head counter.
+     *
+     * @return the number of elements moved
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> target, int maxElements) {
+        while (true) {
+            long position = head.get();
+            int available = 0;
+            while (available < maxElements
+                   && sequences.get((int) ((position + available) & mask)) == position + available + 1) {
+                available++;
+            }
+            if (available == 0) {
+                return 0;
+            }
+            if (head.compareAndSet(position, position + available)) {
+                for (int i = 0; i < available; i++) {
+                    long slot = position + i;
+                    target.add((E) release((int) (slot & mask), slot));
+                }
+                return available;
+            }
+        }
+    }
+
+    public int size() {
+        long size = (tail.get() & ~CLOSED) - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * Stops accepting new elements and wakes up the waiting consumers. Elements already queued can still be taken, and
+     * so can those of producers that claimed their slot before the close but publish it after.
+     */
+    public void close() {
+        long position = tail.get();
+        while ((position & CLOSED) == 0 && ! tail.compareAndSet(position, position | CLOSED)) {
+            position = tail.get();
+        }
+        closed = true;
+        signalConsumers();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void clear() {
+        while (nonNull(poll())) {
+            // discard
+        }
+    }
+
+    private Object release(int index, long position) {
+        Object element = buffer[index];
+        buffer[index] = null;
+        sequences.set(index, position + capacity);
+        return element;
+    }
+
+    /**
+     * Registers the current thread before its last look at the queue: either that look sees an element published
+     * meanwhile, or the producer that published it sees the registration.
+     */
+    private void startWaiting() {
+        waitingConsumers.add(Thread.currentThread());
+        waitingConsumerCount.incrementAndGet();
+    }
+
+    private void stopWaiting() {
+        waitingConsumerCount.decrementAndGet();
+        waitingConsumers.remove(Thread.currentThread());
+    }
+
+    private void signalConsumers() {
+        if (waitingConsumerCount.get() != 0) {
+            waitingConsumers.forEach(LockSupport::unpark);
+        }
+    }
+
+    /**
+     * Keeps the head and the tail counters on different cache lines, producers and consumers would otherwise
+     * invalidate each other's line on every operation.
+     */
+    @SuppressWarnings("unused")
+    private static class PaddedAtomicLong extends AtomicLong {
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -0,0 +1,45 @@
+package io.clearsolutions.logback.retry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces PutLogEvents calls to an allowed rate that adapts to throttling the AIMD way: every throttled request halves
+ * the rate, every successful one raises it by a fixed step, up to the configured maximum. Under account-wide
+ * throttling the appender therefore settles just below the rate CloudWatch accepts instead of hammering the API.
+ */
+public class AdaptiveRateLimiter {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double MIN_REQUESTS_PER_SECOND = 0.5;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double INCREASE_STEP = 0.5;
+
+    private final double maxRequestsPerSecond;
+    private double requestsPerSecond;
+    private long nextPermitNanos = System.nanoTime();
+
+    public AdaptiveRateLimiter(double maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = Math.max(maxRequestsPerSecond, MIN_REQUESTS_PER_SECOND);
+        this.requestsPerSecond = this.maxRequestsPerSecond;
+    }
+
+    /**
+     * Reserves the next send slot without waiting.
+     *
+     * @return how many nanoseconds the caller has to wait before sending
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        long permit = Math.max(now, nextPermitNanos);
+        nextPermitNanos = permit + (long) (NANOS_PER_SECOND / requestsPerSecond);
+        return permit - now;
+    }
+
+    public synchronized void onSuccess() {
+        requestsPerSecond = Math.min(maxRequestsPerSecond, requestsPerSecond + INCREASE_STEP);
+    }
+
+    public synchronized void onThrottled() {
+        requestsPerSecond = Math.max(MIN_REQUESTS_PER_SECOND, requestsPerSecond * DECREASE_FACTOR);
+    }
+}
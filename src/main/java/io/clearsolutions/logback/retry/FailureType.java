@@ -0,0 +1,28 @@
+package io.clearsolutions.logback.retry;
+
+public enum FailureType {
+    /**
+     * Transient server or network failure, the same request may succeed later.
+     */
+    RETRYABLE,
+    /**
+     * The account or stream is over its request rate, retry later and slow down.
+     */
+    THROTTLED,
+    /**
+     * Retry with the sequence token CloudWatch expects.
+     */
+    INVALID_SEQUENCE_TOKEN,
+    /**
+     * The log group or stream was deleted, create it and retry.
+     */
+    RESOURCE_NOT_FOUND,
+    /**
+     * CloudWatch already has this batch.
+     */
+    ALREADY_ACCEPTED,
+    /**
+     * The request can never succeed, e.g. invalid parameters or rejected credentials.
+     */
+    FATAL
+}
@@ -0,0 +1,115 @@
+package io.clearsolutions.logback.retry;
+
+import io.clearsolutions.logback.configuration.RetryConfiguration;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.cloudwatchlogs.model.DataAlreadyAcceptedException;
+import software.amazon.awssdk.services.cloudwatchlogs.model.InvalidSequenceTokenException;
+import software.amazon.awssdk.services.cloudwatchlogs.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.cloudwatchlogs.model.ServiceUnavailableException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Classifies PutLogEvents failures and computes retry delays: exponential backoff with full jitter, limited both by
+ * the number of retries and by a deadline per batch.
+ */
+public class RetryEngine {
+
+    private final RetryConfiguration configuration;
+    private final AdaptiveRateLimiter rateLimiter;
+
+    public RetryEngine(RetryConfiguration configuration) {
+        this.configuration = configuration;
+        this.rateLimiter = configuration.isAdaptiveRateLimiting()
+                           ? new AdaptiveRateLimiter(configuration.getMaxRequestsPerSecond())
+                           : null;
+    }
+
+    public FailureType classify(Throwable error) {
+        if (error instanceof DataAlreadyAcceptedException) {
+            return FailureType.ALREADY_ACCEPTED;
+        }
+        if (error instanceof InvalidSequenceTokenException) {
+            return FailureType.INVALID_SEQUENCE_TOKEN;
+        }
+        if (error instanceof ResourceNotFoundException) {
+            return FailureType.RESOURCE_NOT_FOUND;
+        }
+        if (error instanceof SdkServiceException) {
+            SdkServiceException serviceException = (SdkServiceException) error;
+            if (serviceException.isThrottlingException()) {
+                return FailureType.THROTTLED;
+            }
+            if (error instanceof ServiceUnavailableException || serviceException.statusCode() >= 500) {
+                return FailureType.RETRYABLE;
+            }
+            return FailureType.FATAL;
+        }
+        if (error instanceof SdkClientException) {
+            // connection failures, timeouts and other I/O errors
+            return FailureType.RETRYABLE;
+        }
+        return FailureType.FATAL;
+    }
+
+    /**
+     * @return the deadline for all attempts of a batch that is sent for the first time now
+     */
+    public long deadlineNanos() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(configuration.getRetryDeadlineMillis());
+    }
+
+    /**
+     * Calculates the delay before the given retry, or {@code -1} if the batch has run out of retries or time.
+     *
+     * @param type          the classified failure of the last attempt
+     * @param retry         the number of the retry about to be made, starting with 1
+     * @param deadlineNanos the deadline of the batch
+     */
+    public long retryDelayNanos(FailureType type, int retry, long deadlineNanos) {
+        if (retry > configuration.getMaxRetries()) {
+            return -1;
+        }
+        long delayNanos;
+        if (type == FailureType.INVALID_SEQUENCE_TOKEN || type == FailureType.RESOURCE_NOT_FOUND) {
+            delayNanos = 0;
+        } else {
+            delayNanos = TimeUnit.MILLISECONDS.toNanos(backoffMillis(retry));
+        }
+        if (System.nanoTime() + delayNanos - deadlineNanos > 0) {
+            return -1;
+        }
+        return delayNanos;
+    }
+
+    private long backoffMillis(int retry) {
+        int exponent = Math.min(retry - 1, 30);
+        long ceiling = Math.min(configuration.getRetryMaxDelayMillis(),
+                                configuration.getRetryBaseDelayMillis() << exponent);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * @return the wait in nanoseconds before the next request may be sent
+     */
+    public long reserveSendSlot() {
+        return isNull(rateLimiter) ? 0 : rateLimiter.reserve();
+    }
+
+    public void onSuccess() {
+        if (nonNull(rateLimiter)) {
+            rateLimiter.onSuccess();
+        }
+    }
+
+    public void onThrottled() {
+        if (nonNull(rateLimiter)) {
+            rateLimiter.onThrottled();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package io.clearsolutions.logback.routing;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import org.slf4j.Marker;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Sends matching events to another log group and/or stream of the same appender:
+ * <pre>
+ * &lt;route&gt;
+ *     &lt;logGroupName&gt;audit&lt;/logGroupName&gt;
+ *     &lt;loggerPrefix&gt;com.example.audit, com.example.security&lt;/loggerPrefix&gt;
+ *     &lt;level&gt;INFO&lt;/level&gt;
+ * &lt;/route&gt;
+ * </pre>
+ * An event matches when it meets every condition that is set: one of the logger prefixes, at least the level, the
+ * marker, and the MDC key, optionally with the given value. The group and the stream default to the ones of the
+ * appender.
+ */
+public class Route {
+
+    private String logGroupName;
+    private String logStreamName;
+    private List<String> loggerPrefixes;
+    private Level level;
+    private String marker;
+    private String mdcKey;
+    private String mdcValue;
+
+    public boolean matches(ILoggingEvent event) {
+        if (nonNull(loggerPrefixes) && ! matchesLogger(event.getLoggerName())) {
+            return false;
+        }
+        if (nonNull(level) && ! event.getLevel().isGreaterOrEqual(level)) {
+            return false;
+        }
+        if (nonNull(marker) && ! hasMarker(event.getMarkerList())) {
+            return false;
+        }
+        if (nonNull(mdcKey)) {
+            Map<String, String> mdc = event.getMDCPropertyMap();
+            String value = isNull(mdc) ? null : mdc.get(mdcKey);
+            return nonNull(value) && (isNull(mdcValue) || mdcValue.equals(value));
+        }
+        return true;
+    }
+
+    /**
+     * A prefix matches the logger itself and its descendants, {@code com.example.audit} does not match
+     * {@code com.example.auditing}.
+     */
+    private boolean matchesLogger(String loggerName) {
+        for (String prefix : loggerPrefixes) {
+            if (loggerName.startsWith(prefix)
+                && (loggerName.length() == prefix.length() || loggerName.charAt(prefix.length()) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasMarker(List<Marker> markers) {
+        if (isNull(markers)) {
+            return false;
+        }
+        for (Marker eventMarker : markers) {
+            if (eventMarker.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getLogGroupName() {
+        return logGroupName;
+    }
+
+    public void setLogGroupName(String logGroupName) {
+        this.logGroupName = logGroupName;
+    }
+
+    public String getLogStreamName() {
+        return logStreamName;
+    }
+
+    public void setLogStreamName(String logStreamName) {
+        this.logStreamName = logStreamName;
+    }
+
+    /**
+     * Comma-separated logger names, each matching the logger and all its descendants.
+     */
+    public void setLoggerPrefix(String loggerPrefix) {
+        this.loggerPrefixes = isNull(loggerPrefix)
+                              ? null
+                              : Arrays.stream(loggerPrefix.split(","))
+                                      .map(String::trim)
+                                      .filter(prefix -> ! prefix.isEmpty())
+                                      .collect(Collectors.toList());
+    }
+
+    /**
+     * The minimum level of the events to route.
+     *
+     * @throws IllegalArgumentException if the level is not one of logback's, which Joran reports as a configuration
+     *                                  error
+     */
+    public void setLevel(String level) {
+        var parsedLevel = Level.toLevel(level, null);
+        if (nonNull(level) && isNull(parsedLevel)) {
+            throw new IllegalArgumentException("Unknown level of route " + this + ": " + level
+                                               + ", expected one of ALL, TRACE, DEBUG, INFO, WARN, ERROR, OFF");
+        }
+        this.level = parsedLevel;
+    }
+
+    public void setMarker(String marker) {
+        this.marker = marker;
+    }
+
+    public void setMdcKey(String mdcKey) {
+        this.mdcKey = mdcKey;
+    }
+
+    public void setMdcValue(String mdcValue) {
+        this.mdcValue = mdcValue;
+    }
+
+    @Override
+    public String toString() {
+        return "Route{logGroupName=" + logGroupName + ", logStreamName=" + logStreamName + "}";
+    }
+}
@@ -0,0 +1,241 @@
+package io.clearsolutions.logback.spool;
+
+import io.clearsolutions.logback.LogEventDTO;
+import io.clearsolutions.logback.configuration.SpoolConfiguration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Overflow buffer on disk for events that could not be queued or shipped. Events are appended to fixed-size
+ * memory-mapped segment files in the spool directory, and the worker replays whole segments oldest first once
+ * CloudWatch accepts requests again. When the spool reaches its size cap the oldest segment is evicted.
+ * <p>
+ * Segments survive a restart: files left in the directory are replayed by the next run. They are looked up by
+ * {@link #load()} on a worker thread, so starting the appender does not wait for the disk. A segment taken for replay
+ * is deleted only when the replay is committed, after its events were sent or spooled again, so replay is at least
+ * once.
+ */
+public class DiskSpool {
+
+    private static final String SEGMENT_PREFIX = "spool-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    // after a failed request replays wait this long, then the next replay probes whether CloudWatch is back
+    static final long REPLAY_PROBE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSegments;
+    private final ArrayDeque<SpoolSegment> segments = new ArrayDeque<>();
+    private SpoolSegment active;
+    private long nextSequence;
+    private boolean loaded;
+
+    private volatile long spooledEvents;
+    private volatile boolean endpointAvailable = true;
+    private volatile long lastFailureNanos;
+
+    public DiskSpool(SpoolConfiguration configuration) throws IOException {
+        this.directory = Paths.get(configuration.getSpoolDirectory());
+        this.segmentSize = configuration.getSpoolSegmentSize();
+        this.maxSegments = Math.max(configuration.getMaxSpoolSize() / segmentSize, 1);
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Picks up the segments left by a previous run, once. Appending and replaying load the spool themselves if it was
+     * not loaded yet, as new segments must be numbered after the existing ones.
+     */
+    public synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        try {
+            loadSegments();
+        } catch (IOException e) {
+            System.err.println("Failed to load spooled log events, they are left for the next run: " + e.getMessage());
+        }
+    }
+
+    public synchronized void append(List<LogEventDTO> logs) {
+        load();
+        logs.forEach(this::appendOne);
+    }
+
+    public synchronized void append(LogEventDTO log) {
+        load();
+        appendOne(log);
+    }
+
+    private void appendOne(LogEventDTO log) {
+        try {
+            if (isNull(active) || ! active.append(log)) {
+                rotate();
+                if (! active.append(log)) {
+                    System.err.println(format("Log event of %d bytes does not fit into a spool segment of %d bytes, "
+                                              + "discarding it.", log.getMessage().length, segmentSize));
+                    return;
+                }
+            }
+            spooledEvents++;
+        } catch (IOException e) {
+            System.err.println("Failed to spool log event: " + e.getMessage());
+        }
+    }
+
+    public boolean hasSpooledEvents() {
+        return spooledEvents > 0;
+    }
+
+    /**
+     * @return {@code true} if there are spooled events and either the last request to CloudWatch succeeded or the
+     *         probe interval since it failed has passed
+     */
+    public boolean isReplayPending() {
+        return nanosUntilReplay(System.nanoTime()) == 0;
+    }
+
+    /**
+     * Replays do not wait for new traffic to find out that CloudWatch is back: once the probe interval after a failed
+     * request has passed, the replay itself is the probe. If it fails again, the interval starts over.
+     *
+     * @return {@code 0} if a replay is due, the nanoseconds until the next probe if the last request failed, and
+     *         {@link Long#MAX_VALUE} if nothing is spooled
+     */
+    public long nanosUntilReplay(long nowNanos) {
+        if (! hasSpooledEvents()) {
+            return Long.MAX_VALUE;
+        }
+        if (endpointAvailable) {
+            return 0;
+        }
+        return Math.max(lastFailureNanos + REPLAY_PROBE_INTERVAL_NANOS - nowNanos, 0);
+    }
+
+    /**
+     * Takes the oldest segment out of the spool and returns its events. The active segment is sealed first if it is
+     * the only one left. The file is kept until the replay is committed.
+     *
+     * @return the replay or {@code null} if there is no segment to replay
+     */
+    public synchronized SpoolReplay takeOldest() {
+        load();
+        SpoolSegment oldest = segments.peekFirst();
+        if (isNull(oldest)) {
+            return null;
+        }
+        if (oldest == active) {
+            active.seal();
+            active = null;
+        }
+        segments.removeFirst();
+        spooledEvents -= oldest.getEvents();
+        try {
+            return new SpoolReplay(oldest, oldest.read());
+        } catch (IOException e) {
+            System.err.println("Failed to read spool segment, it is left for the next run: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the segment of a replay whose events were all sent, spooled again or discarded as not deliverable.
+     */
+    public synchronized void commit(SpoolReplay replay) {
+        try {
+            replay.getSegment().delete();
+        } catch (IOException e) {
+            System.err.println("Failed to delete replayed spool segment, it is replayed again by the next run: "
+                               + e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes the active segment to disk, the spooled events are replayed by the next run.
+     */
+    public synchronized void close() {
+        if (nonNull(active)) {
+            active.seal();
+            active = null;
+        }
+    }
+
+    public void onWriteSucceeded() {
+        endpointAvailable = true;
+    }
+
+    public void onWriteFailed() {
+        lastFailureNanos = System.nanoTime();
+        endpointAvailable = false;
+    }
+
+    public long getSpooledEvents() {
+        return spooledEvents;
+    }
+
+    private void rotate() throws IOException {
+        if (nonNull(active)) {
+            active.seal();
+            active = null;
+        }
+        while (segments.size() >= maxSegments) {
+            SpoolSegment evicted = segments.removeFirst();
+            spooledEvents -= evicted.getEvents();
+            evicted.delete();
+            System.err.println(format("Spool is full, evicted the oldest segment with %d log events.",
+                                      evicted.getEvents()));
+        }
+        Path path = directory.resolve(format("%s%019d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        active = SpoolSegment.create(path, segmentSize);
+        nextSequence++;
+        segments.addLast(active);
+    }
+
+    private void loadSegments() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> isSegmentFile(path.getFileName().toString()))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+        if (! files.isEmpty()) {
+            // numbered first, so new segments never collide with old ones even if opening one of these fails
+            nextSequence = sequenceOf(files.get(files.size() - 1)) + 1;
+        }
+        for (Path file : files) {
+            SpoolSegment segment = SpoolSegment.open(file);
+            if (segment.isEmpty()) {
+                segment.delete();
+                continue;
+            }
+            segments.addLast(segment);
+            spooledEvents += segment.getEvents();
+        }
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static boolean isSegmentFile(String name) {
+        return name.startsWith(SEGMENT_PREFIX)
+               && name.endsWith(SEGMENT_SUFFIX)
+               && name.length() > SEGMENT_PREFIX.length() + SEGMENT_SUFFIX.length()
+               && name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())
+                      .chars()
+                      .allMatch(Character::isDigit);
+    }
+}
@@ -0,0 +1,28 @@
+package io.clearsolutions.logback.spool;
+
+import io.clearsolutions.logback.LogEventDTO;
+
+import java.util.List;
+
+/**
+ * The events of one segment taken for replay. The segment file stays on disk until the replay is committed with
+ * {@link DiskSpool#commit(SpoolReplay)}, so a crash in between replays the segment again on the next run.
+ */
+public class SpoolReplay {
+
+    private final SpoolSegment segment;
+    private final List<LogEventDTO> events;
+
+    SpoolReplay(SpoolSegment segment, List<LogEventDTO> events) {
+        this.segment = segment;
+        this.events = events;
+    }
+
+    public List<LogEventDTO> getEvents() {
+        return events;
+    }
+
+    SpoolSegment getSegment() {
+        return segment;
+    }
+}
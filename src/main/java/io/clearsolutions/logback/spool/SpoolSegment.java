@@ -0,0 +1,147 @@
+package io.clearsolutions.logback.spool;
+
+import io.clearsolutions.logback.LogEventDTO;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * A fixed-size memory-mapped file holding spooled events one after another. Every record is
+ * {@code [int length + 1][long timestamp][int shard][message bytes]}; the length is written last, so a record torn by a
+ * crash reads as the end of the segment, the same as the zero-filled tail of a file that was never full. The length is
+ * stored plus one, so an empty message is never mistaken for that end.
+ */
+class SpoolSegment {
+
+    static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path path;
+    private final int size;
+    private MappedByteBuffer buffer;
+    private int position;
+    private int events;
+
+    private SpoolSegment(Path path, int size, MappedByteBuffer buffer, int position, int events) {
+        this.path = path;
+        this.size = size;
+        this.buffer = buffer;
+        this.position = position;
+        this.events = events;
+    }
+
+    static SpoolSegment create(Path path, int size) throws IOException {
+        try (var channel = FileChannel.open(path,
+                                            StandardOpenOption.CREATE_NEW,
+                                            StandardOpenOption.READ,
+                                            StandardOpenOption.WRITE)) {
+            return new SpoolSegment(path, size, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), 0, 0);
+        }
+    }
+
+    /**
+     * Opens a segment left by a previous run, read-only: it is replayed and deleted, never appended to.
+     */
+    static SpoolSegment open(Path path) throws IOException {
+        var segment = new SpoolSegment(path, (int) Files.size(path), null, 0, 0);
+        segment.events = segment.count();
+        return segment;
+    }
+
+    boolean append(LogEventDTO log) {
+        byte[] message = log.getMessage();
+        int recordSize = RECORD_HEADER_SIZE + message.length;
+        if (buffer == null || position + recordSize > size) {
+            return false;
+        }
+        buffer.putLong(position + Integer.BYTES, log.getTimestamp());
+        buffer.putInt(position + Integer.BYTES + Long.BYTES, log.getShard());
+        buffer.duplicate().position(position + RECORD_HEADER_SIZE).put(message);
+        buffer.putInt(position, message.length + 1);
+        position += recordSize;
+        events++;
+        return true;
+    }
+
+    List<LogEventDTO> read() throws IOException {
+        ByteBuffer data = data();
+        List<LogEventDTO> logs = new ArrayList<>();
+        int offset = 0;
+        int length;
+        while ((length = messageLength(data, offset)) >= 0) {
+            long timestamp = data.getLong(offset + Integer.BYTES);
+            int shard = data.getInt(offset + Integer.BYTES + Long.BYTES);
+            byte[] message = new byte[length];
+            data.duplicate().position(offset + RECORD_HEADER_SIZE).get(message);
+            logs.add(new LogEventDTO(message, timestamp, shard));
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return logs;
+    }
+
+    /**
+     * Counts the records by walking their length prefixes, the messages are neither read nor copied.
+     */
+    private int count() throws IOException {
+        ByteBuffer data = data();
+        int records = 0;
+        int offset = 0;
+        int length;
+        while ((length = messageLength(data, offset)) >= 0) {
+            records++;
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return records;
+    }
+
+    /**
+     * @return the message length of the record at the offset, {@code -1} at the end of the segment
+     */
+    private int messageLength(ByteBuffer data, int offset) {
+        if (offset + RECORD_HEADER_SIZE > size) {
+            return -1;
+        }
+        int length = data.getInt(offset) - 1;
+        return length < 0 || (long) offset + RECORD_HEADER_SIZE + length > size ? -1 : length;
+    }
+
+    private ByteBuffer data() throws IOException {
+        if (nonNull(buffer)) {
+            return buffer;
+        }
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Flushes the written records to disk and stops accepting new ones.
+     */
+    void seal() {
+        if (nonNull(buffer)) {
+            buffer.force();
+        }
+        buffer = null;
+    }
+
+    void delete() throws IOException {
+        buffer = null;
+        Files.deleteIfExists(path);
+    }
+
+    boolean isEmpty() {
+        return events == 0;
+    }
+
+    int getEvents() {
+        return events;
+    }
+}
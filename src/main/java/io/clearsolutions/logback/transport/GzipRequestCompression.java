@@ -0,0 +1,153 @@
+package io.clearsolutions.logback.transport;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.SdkHttpRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.PutLogEventsRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Sends PutLogEvents bodies gzip-compressed with {@code Content-Encoding: gzip}. The body is compressed before the
+ * request is signed, so the signature covers the bytes on the wire. Bodies below the threshold, and bodies that would
+ * not get smaller, are sent as they are.
+ * <p>
+ * An endpoint that does not decode the body fails to parse it. The first such rejection switches compression off for
+ * the lifetime of the client, and every rejected compressed request is retried uncompressed, see
+ * {@link #fallBackIfRejected(Throwable)}.
+ */
+public class GzipRequestCompression implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<byte[]> COMPRESSED_BODY = new ExecutionAttribute<>("GzipCompressedBody");
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final int UNSUPPORTED_MEDIA_TYPE = 415;
+
+    private final int thresholdBytes;
+    private volatile boolean enabled = true;
+    // failures of compressed requests that were rejected, until the writer asks about them
+    private final Set<Throwable> rejectedRequests = Collections.synchronizedSet(Collections.newSetFromMap(
+        new WeakHashMap<>()));
+
+    public GzipRequestCompression(int thresholdBytes) {
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    @Override
+    public SdkHttpRequest modifyHttpRequest(Context.ModifyHttpRequest context,
+                                            ExecutionAttributes executionAttributes) {
+        SdkHttpRequest request = context.httpRequest();
+        if (! enabled
+            || ! (context.request() instanceof PutLogEventsRequest)
+            || context.requestBody().isEmpty()
+            || request.firstMatchingHeader(CONTENT_ENCODING).isPresent()) {
+            return request;
+        }
+        byte[] body = readBody(context.requestBody().get());
+        if (body.length < thresholdBytes) {
+            return request;
+        }
+        byte[] compressed = gzip(body);
+        if (compressed.length >= body.length) {
+            return request;
+        }
+        executionAttributes.putAttribute(COMPRESSED_BODY, compressed);
+        return request.toBuilder()
+                      .putHeader(CONTENT_ENCODING, "gzip")
+                      .putHeader("Content-Length", Integer.toString(compressed.length))
+                      .build();
+    }
+
+    @Override
+    public Optional<RequestBody> modifyHttpContent(Context.ModifyHttpRequest context,
+                                                   ExecutionAttributes executionAttributes) {
+        byte[] compressed = executionAttributes.getAttribute(COMPRESSED_BODY);
+        return isNull(compressed) ? context.requestBody() : Optional.of(RequestBody.fromBytes(compressed));
+    }
+
+    @Override
+    public Optional<AsyncRequestBody> modifyAsyncHttpContent(Context.ModifyHttpRequest context,
+                                                             ExecutionAttributes executionAttributes) {
+        byte[] compressed = executionAttributes.getAttribute(COMPRESSED_BODY);
+        return isNull(compressed) ? context.asyncRequestBody() : Optional.of(AsyncRequestBody.fromBytes(compressed));
+    }
+
+    /**
+     * Remembers the failures of compressed requests the endpoint could not read: HTTP 415, or a
+     * {@code SerializationException} from parsing gzip bytes as JSON. The first one switches compression off.
+     */
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        if (isNull(executionAttributes.getAttribute(COMPRESSED_BODY)) || ! isCompressionRejected(context.exception())) {
+            return;
+        }
+        rejectedRequests.add(context.exception());
+        if (enabled) {
+            enabled = false;
+            System.err.println("CloudWatch endpoint rejected a gzip-compressed request, "
+                               + "sending requests uncompressed from now on.");
+        }
+    }
+
+    /**
+     * Tells whether the error is the rejection of a compressed request. Every such request is retried uncompressed,
+     * also those that were already in flight when the first rejection switched compression off.
+     *
+     * @return {@code true} if the failed request should be retried uncompressed
+     */
+    public boolean fallBackIfRejected(Throwable error) {
+        for (Throwable cause = error; nonNull(cause); cause = cause.getCause()) {
+            if (rejectedRequests.remove(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCompressionRejected(Throwable error) {
+        if (! (error instanceof AwsServiceException)) {
+            return false;
+        }
+        var serviceException = (AwsServiceException) error;
+        return serviceException.statusCode() == UNSUPPORTED_MEDIA_TYPE
+               || nonNull(serviceException.awsErrorDetails())
+                  && "SerializationException".equals(serviceException.awsErrorDetails().errorCode());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private static byte[] readBody(RequestBody requestBody) {
+        try (InputStream in = requestBody.contentStreamProvider().newStream()) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        var out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (var gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
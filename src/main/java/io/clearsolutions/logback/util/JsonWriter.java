@@ -0,0 +1,251 @@
+package io.clearsolutions.logback.util;
+
+import java.util.Arrays;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Writes JSON straight into a growable UTF-8 byte buffer. Strings are escaped and encoded char by char, so no
+ * intermediate Strings or byte arrays are created. Instances are meant to be reused by one thread at a time, see
+ * {@link #reset()}.
+ */
+public class JsonWriter {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // a buffer that grew for one huge event is dropped instead of being held by the thread forever
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+    private static final byte[] HEX_DIGITS = {
+        '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+    private static final String TRUNCATED = "...";
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    public JsonWriter reset() {
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+        size = 0;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public JsonWriter writeByte(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Writes the text as is, it has to be ASCII that needs no escaping, e.g. field names and punctuation.
+     */
+    public JsonWriter writeAscii(String text) {
+        int length = text.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[size++] = (byte) text.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a quoted string, {@code null} as {@code null}. A value whose escaped form is longer than
+     * {@code maxBytes} is cut at a character boundary and marked with "...".
+     */
+    public JsonWriter writeString(CharSequence value, int maxBytes) {
+        if (isNull(value)) {
+            return writeAscii("null");
+        }
+        writeByte('"');
+        if (! appendEscaped(value, limitAfter(maxBytes))) {
+            writeAscii(TRUNCATED);
+        }
+        return writeByte('"');
+    }
+
+    /**
+     * @return the size the buffer reaches after {@code maxBytes} more bytes, the limit to pass to the append methods,
+     * saturated instead of overflowing for a huge cap
+     */
+    public int limitAfter(int maxBytes) {
+        return maxBytes > Integer.MAX_VALUE - size ? Integer.MAX_VALUE : size + maxBytes;
+    }
+
+    public JsonWriter writeLong(long value) {
+        appendDigits(value, Integer.MAX_VALUE);
+        return this;
+    }
+
+    /**
+     * Writes a finite number, NaN and infinities have no JSON form and are written as {@code null}.
+     */
+    public JsonWriter writeDouble(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return writeAscii("null");
+        }
+        if (value == (long) value && Math.abs(value) < 1e15) {
+            return writeLong((long) value);
+        }
+        return writeAscii(Double.toString(value));
+    }
+
+    /**
+     * Writes zero-padded digits, for dates and times.
+     */
+    public JsonWriter writePadded(int value, int digits) {
+        ensureCapacity(digits);
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[size + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+        return this;
+    }
+
+    /**
+     * Appends the escaped text to a string that is already open, stopping before the buffer would grow past
+     * {@code limit}. Lets one size cap span several pieces of text.
+     *
+     * @return {@code false} if the text was cut
+     */
+    public boolean appendEscaped(CharSequence text, int limit) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                if (size + 1 > limit) {
+                    return false;
+                }
+                ensureCapacity(1);
+                buffer[size++] = (byte) c;
+            } else if (c < 0x80) {
+                if (! appendEscapedAscii(c, limit)) {
+                    return false;
+                }
+            } else if (c < 0x800) {
+                if (size + 2 > limit) {
+                    return false;
+                }
+                ensureCapacity(2);
+                buffer[size++] = (byte) (0xC0 | c >> 6);
+                buffer[size++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c)
+                       && i + 1 < length
+                       && Character.isLowSurrogate(text.charAt(i + 1))) {
+                if (size + 4 > limit) {
+                    return false;
+                }
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                ensureCapacity(4);
+                buffer[size++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[size++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // a lone surrogate cannot be encoded, same replacement as String.getBytes
+                if (size + 1 > limit) {
+                    return false;
+                }
+                ensureCapacity(1);
+                buffer[size++] = '?';
+            } else {
+                if (size + 3 > limit) {
+                    return false;
+                }
+                ensureCapacity(3);
+                buffer[size++] = (byte) (0xE0 | c >> 12);
+                buffer[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[size++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends the decimal digits of the value, all or nothing, stopping before the buffer would grow past
+     * {@code limit}.
+     *
+     * @return {@code false} if the digits did not fit
+     */
+    public boolean appendDigits(long value, int limit) {
+        if (value == Long.MIN_VALUE) {
+            return appendEscaped(Long.toString(value), limit);
+        }
+        int digits = 1;
+        for (long rest = Math.abs(value) / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int length = value < 0 ? digits + 1 : digits;
+        if (size + length > limit) {
+            return false;
+        }
+        ensureCapacity(length);
+        if (value < 0) {
+            buffer[size++] = '-';
+            value = -value;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[size + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+        return true;
+    }
+
+    private boolean appendEscapedAscii(char c, int limit) {
+        char shortEscape;
+        switch (c) {
+            case '"':
+                shortEscape = '"';
+                break;
+            case '\\':
+                shortEscape = '\\';
+                break;
+            case '\n':
+                shortEscape = 'n';
+                break;
+            case '\r':
+                shortEscape = 'r';
+                break;
+            case '\t':
+                shortEscape = 't';
+                break;
+            default:
+                shortEscape = 0;
+        }
+        if (shortEscape != 0) {
+            if (size + 2 > limit) {
+                return false;
+            }
+            ensureCapacity(2);
+            buffer[size++] = '\\';
+            buffer[size++] = (byte) shortEscape;
+            return true;
+        }
+        if (size + 6 > limit) {
+            return false;
+        }
+        ensureCapacity(6);
+        buffer[size++] = '\\';
+        buffer[size++] = 'u';
+        buffer[size++] = '0';
+        buffer[size++] = '0';
+        buffer[size++] = HEX_DIGITS[c >> 4];
+        buffer[size++] = HEX_DIGITS[c & 0xF];
+        return true;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
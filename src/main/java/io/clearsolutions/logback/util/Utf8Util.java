@@ -0,0 +1,27 @@
+package io.clearsolutions.logback.util;
+
+public class Utf8Util {
+
+    private Utf8Util() {
+    }
+
+    /**
+     * Finds the longest prefix of a UTF-8 encoded text that is not longer than the limit and does not end in the
+     * middle of a multi-byte character.
+     *
+     * @param bytes    The UTF-8 encoded text.
+     * @param maxBytes The maximum length of the prefix.
+     * @return The length of the prefix in bytes.
+     */
+    public static int safeCutLength(byte[] bytes, int maxBytes) {
+        if (bytes.length <= maxBytes) {
+            return bytes.length;
+        }
+        int cut = maxBytes;
+        // step back over continuation bytes (10xxxxxx) to the start of the character the limit falls into
+        while (cut > 0 && (bytes[cut] & 0xC0) == 0x80) {
+            cut--;
+        }
+        return cut;
+    }
+}
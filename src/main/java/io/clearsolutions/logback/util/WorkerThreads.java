@@ -0,0 +1,59 @@
+package io.clearsolutions.logback.util;
+
+import java.lang.reflect.Method;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Creates the appender's worker threads, optionally virtual ones. Virtual threads are created through reflection, so
+ * the appender still builds for and runs on Java 11 and only uses them on Java 21 and later.
+ */
+public final class WorkerThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+            // fails on Java 19 and 20 unless preview features are enabled
+            ofVirtual.invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    private WorkerThreads() {
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return nonNull(OF_VIRTUAL);
+    }
+
+    /**
+     * @param virtual whether a virtual thread is wanted, a platform daemon thread is created if they are not supported
+     */
+    public static Thread newThread(Runnable runnable, String name, boolean virtual) {
+        if (virtual && isVirtualThreadSupported()) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (Thread) UNSTARTED.invoke(builder, runnable);
+            } catch (ReflectiveOperationException e) {
+                // not expected once the probe in the static initializer succeeded, fall back to a platform thread
+            }
+        }
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,148 @@
+package io.clearsolutions.logback;
+
+import io.clearsolutions.logback.configuration.CloudWatchConfiguration;
+import io.clearsolutions.logback.configuration.HttpClientType;
+import io.clearsolutions.logback.configuration.RetryConfiguration;
+import io.clearsolutions.logback.configuration.TransportConfiguration;
+import io.clearsolutions.logback.metrics.AppenderMetrics;
+import io.clearsolutions.logback.retry.RetryEngine;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatchlogs.model.CloudWatchLogsException;
+import software.amazon.awssdk.services.cloudwatchlogs.model.CreateLogGroupRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.CreateLogStreamRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.PutRetentionPolicyRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.ResourceAlreadyExistsException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AbstractCloudWatchLogWriterTest {
+
+    @Test
+    void keepsMessageOf256KB() {
+        byte[] message = new byte[AbstractCloudWatchLogWriter.MAX_MESSAGE_SIZE];
+        Arrays.fill(message, (byte) 'a');
+
+        assertThat(AbstractCloudWatchLogWriter.ensureNotLargerThan256KB(message))
+            .isEqualTo(new String(message, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void cutsTwoByteCharactersIntoValidUtf8() throws CharacterCodingException {
+        assertCutAtEveryOffset("\u00e9");
+    }
+
+    @Test
+    void cutsThreeByteCharactersIntoValidUtf8() throws CharacterCodingException {
+        assertCutAtEveryOffset("\u20ac");
+    }
+
+    @Test
+    void cutsFourByteCharactersIntoValidUtf8() throws CharacterCodingException {
+        assertCutAtEveryOffset("\uD83D\uDE00");
+    }
+
+    @Test
+    void takesExistingLogGroupAsCreated() {
+        var writer = new RecordingWriter(List.of(new LogDestination("app", "a"), new LogDestination("app", "b")));
+        writer.existingGroups.add("app");
+
+        writer.initCloudWatchLogGroup();
+
+        assertThat(writer.requests).containsExactly("group app", "stream app/a", "stream app/b");
+        assertThat(writer.metrics.getFailedRequests()).isZero();
+    }
+
+    @Test
+    void skipsTheStreamsOfALogGroupThatCouldNotBeCreated() {
+        var writer = new RecordingWriter(List.of(new LogDestination("denied", "a"), new LogDestination("app", "b")));
+
+        writer.initCloudWatchLogGroup();
+
+        assertThat(writer.requests).containsExactly("group denied", "group app", "retention app", "stream app/b");
+        assertThat(writer.metrics.getRequests()).isEqualTo(4L);
+        assertThat(writer.metrics.getFailedRequests()).isEqualTo(1L);
+    }
+
+    /**
+     * Shifts the text by up to three ASCII bytes, so the 256 KB cut falls on every byte of the character once.
+     */
+    private static void assertCutAtEveryOffset(String character) throws CharacterCodingException {
+        for (int shift = 0; shift < 4; shift++) {
+            String text = "a".repeat(shift)
+                          + character.repeat(AbstractCloudWatchLogWriter.MAX_MESSAGE_SIZE / character.length());
+            byte[] input = text.getBytes(StandardCharsets.UTF_8);
+
+            String cut = AbstractCloudWatchLogWriter.ensureNotLargerThan256KB(input);
+
+            byte[] output = cut.getBytes(StandardCharsets.UTF_8);
+            assertThat(output.length).isLessThanOrEqualTo(AbstractCloudWatchLogWriter.MAX_MESSAGE_SIZE);
+            assertThat(cut).endsWith("...");
+            byte[] prefix = Arrays.copyOf(output, output.length - 3);
+            // strictly decoded, a split character would fail instead of turning into U+FFFD
+            StandardCharsets.UTF_8.newDecoder()
+                                  .onMalformedInput(CodingErrorAction.REPORT)
+                                  .onUnmappableCharacter(CodingErrorAction.REPORT)
+                                  .decode(ByteBuffer.wrap(prefix));
+            assertThat(Arrays.equals(prefix, Arrays.copyOf(input, prefix.length))).isTrue();
+            assertThat(prefix.length).isGreaterThan(AbstractCloudWatchLogWriter.MAX_MESSAGE_SIZE - 64);
+        }
+    }
+
+    private static class RecordingWriter extends AbstractCloudWatchLogWriter {
+
+        private final List<String> requests = new ArrayList<>();
+        private final Set<String> existingGroups = new HashSet<>();
+
+        RecordingWriter(List<LogDestination> destinations) {
+            super(new CloudWatchConfiguration("app", "stream", "eu-west-1", null, null, null, 7, true),
+                  new CloudWatchClientFactory(null,
+                                              new TransportConfiguration(HttpClientType.APACHE,
+                                                                         1, 1, 1, 0, 0, true, 1, false, 0)),
+                  destinations,
+                  null,
+                  new AppenderMetrics(),
+                  new RetryEngine(new RetryConfiguration(0, 1, 1, 1, false, 0)));
+        }
+
+        @Override
+        protected void createLogGroup(CreateLogGroupRequest request) {
+            requests.add("group " + request.logGroupName());
+            if (request.logGroupName().equals("denied")) {
+                throw CloudWatchLogsException.builder().message("not authorized").statusCode(403).build();
+            }
+            if (existingGroups.contains(request.logGroupName())) {
+                throw ResourceAlreadyExistsException.builder().message("exists").statusCode(400).build();
+            }
+        }
+
+        @Override
+        protected void putRetentionPolicy(PutRetentionPolicyRequest request) {
+            requests.add("retention " + request.logGroupName());
+        }
+
+        @Override
+        protected void createLogStream(CreateLogStreamRequest request) {
+            requests.add("stream " + request.logGroupName() + "/" + request.logStreamName());
+        }
+
+        @Override
+        public CompletableFuture<WriteOutcome> write(LogDestination destination, List<LogEventDTO> logs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close(long deadlineNanos) {
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.clearsolutions.logback;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchBuilderTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final BatchBuilder batchBuilder = new BatchBuilder();
+
+    @Test
+    void fillsBatchUpToTheEventLimit() {
+        assertThat(batchBuilder.split(events(BatchBuilder.MAX_BATCH_EVENTS, 10))).hasSize(1);
+
+        List<List<LogEventDTO>> batches = batchBuilder.split(events(BatchBuilder.MAX_BATCH_EVENTS + 1, 10));
+
+        assertThat(batches).extracting(List::size).containsExactly(BatchBuilder.MAX_BATCH_EVENTS, 1);
+    }
+
+    @Test
+    void fillsBatchUpToTheByteLimitCountingTheEventOverhead() {
+        // four events of exactly a quarter of the limit each, overhead included
+        int messageBytes = BatchBuilder.MAX_BATCH_BYTES / 4 - BatchBuilder.EVENT_OVERHEAD_BYTES;
+        List<LogEventDTO> atLimit = events(4, messageBytes);
+        assertThat(BatchBuilder.batchSize(atLimit)).isEqualTo(BatchBuilder.MAX_BATCH_BYTES);
+        assertThat(batchBuilder.split(atLimit)).hasSize(1);
+
+        List<LogEventDTO> overLimit = events(3, messageBytes);
+        overLimit.add(event(messageBytes + 1, NOW));
+        List<List<LogEventDTO>> batches = batchBuilder.split(overLimit);
+
+        assertThat(batches).extracting(List::size).containsExactly(3, 1);
+    }
+
+    @Test
+    void countsOversizedEventsAsCappedAt256KB() {
+        var oversized = event(AbstractCloudWatchLogWriter.MAX_MESSAGE_SIZE + 1000, NOW);
+
+        assertThat(BatchBuilder.eventSize(oversized))
+            .isEqualTo(AbstractCloudWatchLogWriter.MAX_MESSAGE_SIZE + BatchBuilder.EVENT_OVERHEAD_BYTES);
+        // three capped events plus overhead fit into one request, the fourth does not
+        List<List<LogEventDTO>> batches = batchBuilder.split(List.of(oversized, oversized, oversized, oversized));
+        assertThat(batches).extracting(List::size).containsExactly(3, 1);
+    }
+
+    @Test
+    void startsNewBatchWhenTheSpanReaches24Hours() {
+        long lastInSpan = NOW + BatchBuilder.MAX_BATCH_SPAN_MILLIS - 1;
+        assertThat(batchBuilder.split(List.of(event(10, NOW), event(10, lastInSpan)))).hasSize(1);
+
+        List<List<LogEventDTO>> batches = batchBuilder.split(List.of(event(10, NOW),
+                                                                     event(10, lastInSpan),
+                                                                     event(10, lastInSpan + 1)));
+
+        assertThat(batches).extracting(List::size).containsExactly(2, 1);
+    }
+
+    @Test
+    void cutsEventsSpanningSeveralDaysIntoBatchesOfLessThan24Hours() {
+        List<LogEventDTO> logs = new ArrayList<>();
+        for (long hour = 0; hour <= 60; hour += 12) {
+            logs.add(event(10, NOW + hour * HOUR));
+        }
+
+        List<List<LogEventDTO>> batches = batchBuilder.split(logs);
+
+        assertThat(batches).extracting(List::size).containsExactly(2, 2, 2);
+        for (List<LogEventDTO> batch : batches) {
+            long span = batch.get(batch.size() - 1).getTimestamp() - batch.get(0).getTimestamp();
+            assertThat(span).isLessThan(BatchBuilder.MAX_BATCH_SPAN_MILLIS);
+        }
+    }
+
+    @Test
+    void neverExceedsTheApiLimitsWhateverIsConfigured() {
+        var unbounded = new BatchBuilder(Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+        List<List<LogEventDTO>> batches = unbounded.split(events(BatchBuilder.MAX_BATCH_EVENTS + 1, 10));
+
+        assertThat(batches).extracting(List::size).containsExactly(BatchBuilder.MAX_BATCH_EVENTS, 1);
+    }
+
+    @Test
+    void honoursSmallerConfiguredLimits() {
+        var small = new BatchBuilder(3, 2 * (10 + BatchBuilder.EVENT_OVERHEAD_BYTES));
+
+        assertThat(small.split(events(7, 10))).extracting(List::size).containsExactly(2, 2, 2, 1);
+        assertThat(new BatchBuilder(3, BatchBuilder.MAX_BATCH_BYTES).split(events(7, 10)))
+            .extracting(List::size)
+            .containsExactly(3, 3, 1);
+    }
+
+    private static List<LogEventDTO> events(int count, int messageBytes) {
+        List<LogEventDTO> logs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            logs.add(event(messageBytes, NOW));
+        }
+        return logs;
+    }
+
+    private static LogEventDTO event(int messageBytes, long timestamp) {
+        return new LogEventDTO(new byte[messageBytes], timestamp);
+    }
+}
@@ -0,0 +1,93 @@
+package io.clearsolutions.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.KeyValuePair;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloudWatchJsonEncoderTest {
+
+    private static final DateTimeFormatter ISO_MILLIS = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSS'Z'")
+                                                                         .withZone(ZoneOffset.UTC);
+
+    private final LoggerContext context = new LoggerContext();
+    private final CloudWatchJsonEncoder encoder = new CloudWatchJsonEncoder();
+
+    CloudWatchJsonEncoderTest() {
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        encoder.setContext(context);
+        encoder.start();
+    }
+
+    @Test
+    void writesEventAsOneLineDocument() {
+        LoggingEvent event = event("Request \"42\" failed\nretrying", 1_714_558_530_123L);
+        event.setMDCPropertyMap(Map.of("requestId", "42"));
+        event.addKeyValuePair(new KeyValuePair("attempt", 3));
+        event.addKeyValuePair(new KeyValuePair("ratio", Double.NaN));
+        event.addKeyValuePair(new KeyValuePair("cached", true));
+
+        assertThat(encode(event)).isEqualTo("{\"timestamp\":\"2024-05-01T10:15:30.123Z\",\"level\":\"ERROR\","
+                                            + "\"logger\":\"com.example.Service\",\"thread\":\"main\","
+                                            + "\"message\":\"Request \\\"42\\\" failed\\nretrying\","
+                                            + "\"mdc\":{\"requestId\":\"42\"},"
+                                            + "\"kv\":{\"attempt\":3,\"ratio\":null,\"cached\":true}}");
+    }
+
+    @Test
+    void formatsTimestampsLikeJavaTime() {
+        var random = new Random(11);
+        long[] timestamps = new long[1000];
+        timestamps[0] = 0;
+        timestamps[1] = -1;
+        timestamps[2] = 951_782_400_000L; // 2000-02-29
+        timestamps[3] = 4_107_542_399_999L; // 2100-02-28T23:59:59.999
+        for (int i = 4; i < timestamps.length; i++) {
+            timestamps[i] = (long) (random.nextDouble() * 8_000_000_000_000L) - 1_000_000_000_000L;
+        }
+        for (long timestamp : timestamps) {
+            String expected = ISO_MILLIS.format(Instant.ofEpochMilli(timestamp));
+
+            assertThat(encode(event("m", timestamp))).startsWith("{\"timestamp\":\"" + expected + "\",");
+        }
+    }
+
+    @Test
+    void leavesOutSwitchedOffFields() {
+        encoder.setIncludeTimestamp(false);
+        encoder.setIncludeThread(false);
+        encoder.setIncludeLogger(false);
+
+        assertThat(encode(event("hello", 0))).isEqualTo("{\"level\":\"ERROR\",\"message\":\"hello\"}");
+    }
+
+    @Test
+    void capsTheMessage() {
+        encoder.setMaxMessageBytes(5);
+
+        assertThat(encode(event("hello world", 0))).contains("\"message\":\"hello...\"");
+    }
+
+    private LoggingEvent event(String message, long timestamp) {
+        var logger = context.getLogger("com.example.Service");
+        var event = new LoggingEvent("test", logger, Level.ERROR, message, null, null);
+        event.setTimeStamp(timestamp);
+        event.setThreadName("main");
+        return event;
+    }
+
+    private String encode(LoggingEvent event) {
+        return new String(encoder.encode(event), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package io.clearsolutions.logback;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimestampSorterTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final TimestampSorter sorter = new TimestampSorter();
+
+    @Test
+    void keepsArrivalOrderOfEqualTimestamps() {
+        List<LogEventDTO> buffer = new ArrayList<>(List.of(event("b1", NOW - 2), event("a", NOW - 3),
+                                                           event("b2", NOW - 2), event("c", NOW - 1),
+                                                           event("b3", NOW - 2)));
+
+        sorter.sort(buffer, NOW);
+
+        assertThat(buffer).extracting(TimestampSorterTest::message).containsExactly("a", "b1", "b2", "b3", "c");
+    }
+
+    @Test
+    void setsTimestampsCloudWatchWouldRejectToNow() {
+        long tooOld = NOW - TimestampSorter.MAX_EVENT_AGE_MILLIS - 1;
+        long tooNew = NOW + TimestampSorter.MAX_EVENT_AHEAD_MILLIS + 1;
+        long oldest = NOW - TimestampSorter.MAX_EVENT_AGE_MILLIS;
+        List<LogEventDTO> buffer = new ArrayList<>(List.of(event("future", tooNew), event("old", tooOld),
+                                                           event("oldest", oldest), event("late", NOW + 1)));
+
+        int adjusted = sorter.sort(buffer, NOW);
+
+        assertThat(adjusted).isEqualTo(2);
+        assertThat(buffer).extracting(TimestampSorterTest::message).containsExactly("oldest", "future", "old", "late");
+        assertThat(buffer).extracting(LogEventDTO::getTimestamp).containsExactly(oldest, NOW, NOW, NOW + 1);
+    }
+
+    @Test
+    void ordersLikeAStableSortOfTheClampedTimestamps() {
+        var random = new Random(7);
+        for (int iteration = 0; iteration < 500; iteration++) {
+            int size = random.nextInt(300);
+            List<LogEventDTO> buffer = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                long timestamp = random.nextInt(10) == 0
+                                 ? NOW + (random.nextBoolean() ? 1 : -1) * 30L * 24 * 60 * 60 * 1000
+                                 : NOW - random.nextInt(50);
+                buffer.add(event(String.valueOf(i), timestamp));
+            }
+            List<LogEventDTO> expected = new ArrayList<>(buffer.size());
+            for (LogEventDTO log : buffer) {
+                long timestamp = log.getTimestamp();
+                boolean rejected = timestamp < NOW - TimestampSorter.MAX_EVENT_AGE_MILLIS
+                                   || timestamp > NOW + TimestampSorter.MAX_EVENT_AHEAD_MILLIS;
+                expected.add(rejected ? log.withTimestamp(NOW) : log);
+            }
+            expected.sort(Comparator.comparingLong(LogEventDTO::getTimestamp));
+
+            sorter.sort(buffer, NOW);
+
+            assertThat(buffer).extracting(TimestampSorterTest::message)
+                              .containsExactlyElementsOf(expected.stream()
+                                                                 .map(TimestampSorterTest::message)
+                                                                 .collect(Collectors.toList()));
+            assertThat(buffer).extracting(LogEventDTO::getTimestamp)
+                              .containsExactlyElementsOf(expected.stream()
+                                                                 .map(LogEventDTO::getTimestamp)
+                                                                 .collect(Collectors.toList()));
+        }
+    }
+
+    private static LogEventDTO event(String message, long timestamp) {
+        return new LogEventDTO(message.getBytes(StandardCharsets.UTF_8), timestamp);
+    }
+
+    private static String message(LogEventDTO log) {
+        return new String(log.getMessage(), StandardCharsets.UTF_8);
+    }
+}
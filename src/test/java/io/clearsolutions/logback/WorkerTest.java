@@ -0,0 +1,148 @@
+package io.clearsolutions.logback;
+
+import io.clearsolutions.logback.configuration.BatchConfiguration;
+import io.clearsolutions.logback.configuration.LogbackConfiguration;
+import io.clearsolutions.logback.configuration.RoutingConfiguration;
+import io.clearsolutions.logback.configuration.ShardingConfiguration;
+import io.clearsolutions.logback.configuration.ShardingStrategy;
+import io.clearsolutions.logback.configuration.SpoolConfiguration;
+import io.clearsolutions.logback.metrics.AppenderMetrics;
+import io.clearsolutions.logback.queue.RingBufferQueue;
+import io.clearsolutions.logback.spool.DiskSpool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorkerTest {
+
+    private static final LogDestination DESTINATION = new LogDestination("group", "stream");
+
+    @TempDir
+    Path directory;
+
+    private final RecordingLogWriter logWriter = new RecordingLogWriter();
+    private final RingBufferQueue<LogEventDTO> logs = new RingBufferQueue<>(16);
+
+    @Test
+    void replaysEverySpooledSegmentWithoutNewEvents() throws Exception {
+        var configuration = new SpoolConfiguration(directory.toString(), 0, 4L * 1024 * 1024);
+        var previousRun = new DiskSpool(configuration);
+        previousRun.append(event("first"));
+        previousRun.close();
+        // the segment of the previous run is never appended to, so this one goes into a second segment
+        var spool = new DiskSpool(configuration);
+        spool.append(List.of(event("second"), event("third")));
+
+        Thread thread = new Thread(worker(spool));
+        thread.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((logWriter.events.size() < 3 || segmentFiles() > 0) && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+        }
+        logs.close();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertThat(logWriter.events).containsExactly("first", "second", "third");
+        assertThat(spool.getSpooledEvents()).isZero();
+        assertThat(segmentFiles()).isZero();
+    }
+
+    @Test
+    void spoolsTheBatchItIsLingeringOnWhenInterrupted() throws Exception {
+        var spool = new DiskSpool(new SpoolConfiguration(directory.toString(), 0, 0));
+        Worker worker = worker(spool, TimeUnit.MINUTES.toMillis(1));
+
+        interruptWhileLingering(worker);
+
+        assertThat(logWriter.events).isEmpty();
+        assertThat(spool.getSpooledEvents()).isEqualTo(2);
+        assertThat(worker.getUnsentEvents()).isZero();
+    }
+
+    @Test
+    void countsTheBatchItIsLingeringOnAsUnsentWhenInterruptedWithoutSpool() throws Exception {
+        Worker worker = worker(null, TimeUnit.MINUTES.toMillis(1));
+
+        interruptWhileLingering(worker);
+
+        assertThat(logWriter.events).isEmpty();
+        assertThat(worker.getUnsentEvents()).isEqualTo(2);
+    }
+
+    private void interruptWhileLingering(Worker worker) throws InterruptedException {
+        Thread thread = new Thread(worker);
+        thread.start();
+        logs.offer(event("first"));
+        logs.offer(event("second"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (! logs.isEmpty() && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+        }
+        thread.interrupt();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+        assertThat(thread.isAlive()).isFalse();
+    }
+
+    private Worker worker(DiskSpool spool) {
+        return worker(spool, 10);
+    }
+
+    private Worker worker(DiskSpool spool, long flushIntervalMillis) {
+        var shardingConfiguration = new ShardingConfiguration(1, ShardingStrategy.ROUND_ROBIN, null);
+        var logEventEncoder = new LogEventEncoder(new LogbackConfiguration(null, null),
+                                                  shardingConfiguration,
+                                                  new RoutingConfiguration(List.of()));
+        return new Worker(logs,
+                          () -> logWriter,
+                          logEventEncoder,
+                          new BatchConfiguration(flushIntervalMillis,
+                                                 BatchBuilder.MAX_BATCH_EVENTS,
+                                                 BatchBuilder.MAX_BATCH_BYTES),
+                          shardingConfiguration,
+                          spool,
+                          new AppenderMetrics(),
+                          null,
+                          null);
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static LogEventDTO event(String message) {
+        return new LogEventDTO(message.getBytes(StandardCharsets.UTF_8), System.currentTimeMillis());
+    }
+
+    private static class RecordingLogWriter implements LogWriter {
+
+        private final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableFuture<WriteOutcome> write(LogDestination destination, List<LogEventDTO> logs) {
+            logs.forEach(log -> events.add(new String(log.getMessage(), StandardCharsets.UTF_8)));
+            return CompletableFuture.completedFuture(WriteOutcome.SENT);
+        }
+
+        @Override
+        public void close(long deadlineNanos) {
+        }
+
+        @Override
+        public List<LogDestination> getDestinations() {
+            return List.of(DESTINATION);
+        }
+    }
+}
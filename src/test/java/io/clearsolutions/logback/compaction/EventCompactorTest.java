@@ -0,0 +1,105 @@
+package io.clearsolutions.logback.compaction;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import io.clearsolutions.logback.LogEventDTO;
+import io.clearsolutions.logback.configuration.CompactionConfiguration;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MarkerFactory;
+import org.slf4j.event.KeyValuePair;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventCompactorTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private final EventCompactor compactor = new EventCompactor(new CompactionConfiguration(false, 0, true));
+
+    EventCompactorTest() {
+        context.setMDCAdapter(new LogbackMDCAdapter());
+    }
+
+    @Test
+    void mergesIdenticalConsecutiveEvents() {
+        var following = new ArrayDeque<>(List.of(event("retrying", 1010),
+                                                  event("retrying", 1250),
+                                                  event("done", 1300)));
+
+        LogEventDTO compacted = compactor.compact(event("retrying", 1000), following);
+
+        assertThat(compacted.getEvent().getFormattedMessage()).isEqualTo("retrying [repeated 3 times in 250 ms]");
+        assertThat(following).hasSize(1);
+        assertThat(following.peek().getEvent().getFormattedMessage()).isEqualTo("done");
+    }
+
+    @Test
+    void keepsEventWithoutRepeatsAsItIs() {
+        LogEventDTO log = event("retrying", 1000);
+        var following = new ArrayDeque<>(List.of(event("done", 1010)));
+
+        assertThat(compactor.compact(log, following)).isSameAs(log);
+        assertThat(following).hasSize(1);
+    }
+
+    @Test
+    void doesNotMergeEventsWithDifferentMdc() {
+        LogEventDTO next = event("retrying", 1010);
+        ((LoggingEvent) next.getEvent()).setMDCPropertyMap(Map.of("tenant", "b"));
+        LogEventDTO log = event("retrying", 1000);
+        ((LoggingEvent) log.getEvent()).setMDCPropertyMap(Map.of("tenant", "a"));
+        var following = new ArrayDeque<>(List.of(next));
+
+        assertThat(compactor.compact(log, following)).isSameAs(log);
+        assertThat(following).hasSize(1);
+    }
+
+    @Test
+    void doesNotMergeEventsWithDifferentMarkers() {
+        LogEventDTO next = event("retrying", 1010);
+        ((LoggingEvent) next.getEvent()).addMarker(MarkerFactory.getMarker("AUDIT"));
+        LogEventDTO log = event("retrying", 1000);
+        var following = new ArrayDeque<>(List.of(next));
+
+        assertThat(compactor.compact(log, following)).isSameAs(log);
+        assertThat(following).hasSize(1);
+    }
+
+    @Test
+    void doesNotMergeEventsWithDifferentKeyValuePairs() {
+        LogEventDTO next = event("retrying", 1010);
+        ((LoggingEvent) next.getEvent()).addKeyValuePair(new KeyValuePair("attempt", 2));
+        LogEventDTO log = event("retrying", 1000);
+        ((LoggingEvent) log.getEvent()).addKeyValuePair(new KeyValuePair("attempt", 1));
+        var following = new ArrayDeque<>(List.of(next));
+
+        assertThat(compactor.compact(log, following)).isSameAs(log);
+        assertThat(following).hasSize(1);
+    }
+
+    @Test
+    void doesNotMergeEventsFromDifferentThreads() {
+        LogEventDTO next = event("retrying", 1010, "other");
+        LogEventDTO log = event("retrying", 1000);
+        var following = new ArrayDeque<>(List.of(next));
+
+        assertThat(compactor.compact(log, following)).isSameAs(log);
+        assertThat(following).hasSize(1);
+    }
+
+    private LogEventDTO event(String message, long timestamp) {
+        return event(message, timestamp, "main");
+    }
+
+    private LogEventDTO event(String message, long timestamp, String threadName) {
+        var event = new LoggingEvent("test", context.getLogger("test"), Level.INFO, message, null, null);
+        event.setTimeStamp(timestamp);
+        event.setThreadName(threadName);
+        return LogEventDTO.deferred(event);
+    }
+}
@@ -0,0 +1,149 @@
+package io.clearsolutions.logback.emf;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import io.clearsolutions.logback.configuration.EmfConfiguration;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MarkerFactory;
+import org.slf4j.event.KeyValuePair;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricAggregatorTest {
+
+    private static final long TIMESTAMP = 1_714_558_530_000L;
+
+    private final LoggerContext context = new LoggerContext();
+    private final MetricAggregator aggregator = new MetricAggregator(new EmfConfiguration(true,
+                                                                                          "App",
+                                                                                          "METRIC",
+                                                                                          "metric.",
+                                                                                          "service",
+                                                                                          60_000));
+
+    MetricAggregatorTest() {
+        context.setMDCAdapter(new LogbackMDCAdapter());
+    }
+
+    @Test
+    void ignoresEventsThatAreNoObservations() {
+        assertThat(aggregator.record(event("hello"))).isFalse();
+        assertThat(aggregator.flush(TIMESTAMP)).isEmpty();
+    }
+
+    @Test
+    void flushesCounterAsItsSum() {
+        LoggingEvent event = event("orders");
+        event.addMarker(MarkerFactory.getMarker("METRIC"));
+        event.addKeyValuePair(new KeyValuePair("service", "checkout"));
+        aggregator.record(event);
+        aggregator.record(event);
+
+        assertThat(flush()).containsExactly("{\"_aws\":{\"Timestamp\":" + TIMESTAMP + ",\"CloudWatchMetrics\":[{"
+                                            + "\"Namespace\":\"App\",\"Dimensions\":[[\"service\"]],"
+                                            + "\"Metrics\":[{\"Name\":\"orders\",\"Unit\":\"Count\"}]}]},"
+                                            + "\"service\":\"checkout\",\"orders\":2}");
+    }
+
+    @Test
+    void flushesHistogramAsItsValues() {
+        for (int latency : new int[] {12, 7, 30}) {
+            aggregator.record(observation("latency", latency, "Milliseconds"));
+        }
+
+        assertThat(flush()).containsExactly("{\"_aws\":{\"Timestamp\":" + TIMESTAMP + ",\"CloudWatchMetrics\":[{"
+                                            + "\"Namespace\":\"App\",\"Dimensions\":[[]],"
+                                            + "\"Metrics\":[{\"Name\":\"latency\",\"Unit\":\"Milliseconds\"}]}]},"
+                                            + "\"latency\":[12,7,30]}");
+    }
+
+    @Test
+    void flushesSampledHistogramWithExactCountAndSum() {
+        for (int i = 1; i <= 1000; i++) {
+            aggregator.record(observation("latency", i, "Milliseconds"));
+        }
+
+        String document = flush().get(0);
+
+        assertThat(document).contains("\"latency\":{\"Values\":[");
+        assertThat(document).endsWith(",\"Max\":1000,\"Min\":1,\"Count\":1000,\"Sum\":500500}}");
+        String counts = document.substring(document.indexOf("\"Counts\":[") + 10, document.indexOf("],\"Max\""));
+        double totalCount = 0;
+        for (String count : counts.split(",")) {
+            totalCount += Double.parseDouble(count);
+        }
+        assertThat(Math.round(totalCount)).isEqualTo(1000L);
+    }
+
+    @Test
+    void logsObservationsWithoutAFiniteValueAsIs() {
+        assertThat(aggregator.record(observation("latency", "NaN"))).isFalse();
+        assertThat(aggregator.record(observation("latency", "-Infinity"))).isFalse();
+        assertThat(aggregator.record(observation("latency", Double.POSITIVE_INFINITY))).isFalse();
+        assertThat(aggregator.record(observation("latency", "fast"))).isFalse();
+
+        assertThat(aggregator.flush(TIMESTAMP)).isEmpty();
+    }
+
+    @Test
+    void doesNotTakeMetricNameFromTheMdc() {
+        LoggingEvent event = event("request handled");
+        event.setMDCPropertyMap(Map.of("metric.name", "latency", "service", "checkout"));
+
+        assertThat(aggregator.record(event)).isFalse();
+        assertThat(aggregator.flush(TIMESTAMP)).isEmpty();
+    }
+
+    @Test
+    void takesDimensionsFromTheMdc() {
+        LoggingEvent event = observation("latency", 5, "Milliseconds");
+        event.setMDCPropertyMap(Map.of("service", "checkout"));
+        aggregator.record(event);
+
+        assertThat(flush().get(0)).contains("\"Dimensions\":[[\"service\"]]")
+                                  .endsWith("\"service\":\"checkout\",\"latency\":[5]}");
+    }
+
+    @Test
+    void startsEveryIntervalAfresh() {
+        aggregator.record(observation("latency", 5, "Milliseconds"));
+        flush();
+
+        assertThat(aggregator.flush(TIMESTAMP)).isEmpty();
+        aggregator.record(observation("latency", 6, "Milliseconds"));
+        assertThat(flush().get(0)).endsWith("\"latency\":[6]}");
+    }
+
+    private List<String> flush() {
+        return aggregator.flush(TIMESTAMP)
+                         .stream()
+                         .map(document -> new String(document, StandardCharsets.UTF_8))
+                         .collect(Collectors.toList());
+    }
+
+    private LoggingEvent observation(String name, double value, String unit) {
+        LoggingEvent event = event("observation");
+        event.addKeyValuePair(new KeyValuePair("metric.name", name));
+        event.addKeyValuePair(new KeyValuePair("metric.value", value));
+        event.addKeyValuePair(new KeyValuePair("metric.unit", unit));
+        return event;
+    }
+
+    private LoggingEvent observation(String name, Object value) {
+        LoggingEvent event = event("observation");
+        event.addKeyValuePair(new KeyValuePair("metric.name", name));
+        event.addKeyValuePair(new KeyValuePair("metric.value", value));
+        return event;
+    }
+
+    private LoggingEvent event(String message) {
+        return new LoggingEvent("test", context.getLogger("test"), Level.INFO, message, null, null);
+    }
+}
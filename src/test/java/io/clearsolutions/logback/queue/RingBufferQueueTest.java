@@ -0,0 +1,221 @@
+package io.clearsolutions.logback.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RingBufferQueueTest {
+
+    @Test
+    void returnsElementsInInsertionOrder() {
+        var queue = new RingBufferQueue<Integer>(4);
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+
+        assertThat(queue.poll()).isEqualTo(1);
+        List<Integer> drained = new ArrayList<>();
+        assertThat(queue.drainTo(drained, 10)).isEqualTo(2);
+        assertThat(drained).containsExactly(2, 3);
+        assertThat(queue.poll()).isNull();
+    }
+
+    @Test
+    void rejectsElementsWhenFull() {
+        var queue = new RingBufferQueue<Integer>(3);
+
+        assertThat(queue.capacity()).isEqualTo(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(queue.offer(i)).isTrue();
+        }
+        assertThat(queue.offer(4)).isFalse();
+        assertThat(queue.poll()).isEqualTo(0);
+        assertThat(queue.offer(4)).isTrue();
+    }
+
+    @Test
+    void closedQueueRejectsNewElementsAndHandsOutQueuedOnes() throws InterruptedException {
+        var queue = new RingBufferQueue<Integer>(4);
+        queue.offer(1);
+        queue.close();
+
+        assertThat(queue.offer(2)).isFalse();
+        assertThat(queue.isClosed()).isTrue();
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.take()).isEqualTo(1);
+        assertThat(queue.take()).isNull();
+        assertThat(queue.poll(1, TimeUnit.MINUTES)).isNull();
+    }
+
+    @Test
+    void closeWakesUpWaitingConsumer() throws InterruptedException {
+        var queue = new RingBufferQueue<Integer>(4);
+        var result = new AtomicInteger(-1);
+        Thread consumer = new Thread(() -> {
+            try {
+                Integer element = queue.take();
+                result.set(element == null ? 0 : element);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        queue.close();
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertThat(consumer.isAlive()).isFalse();
+        assertThat(result.get()).isZero();
+    }
+
+    @Test
+    void closeWakesUpEveryWaitingConsumer() throws InterruptedException {
+        var queue = new RingBufferQueue<Integer>(4);
+        List<Thread> consumers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Thread consumer = new Thread(() -> {
+                try {
+                    queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            consumers.add(consumer);
+            consumer.start();
+        }
+        queue.close();
+        for (Thread consumer : consumers) {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        assertThat(consumers).noneMatch(Thread::isAlive);
+    }
+
+    @Test
+    void waitingConsumersShareTheElementsWithoutLosingAny() throws InterruptedException {
+        int elements = 100_000;
+        var queue = new RingBufferQueue<Integer>(64);
+        var taken = new AtomicInteger();
+        boolean[] seen = new boolean[elements];
+        List<Thread> consumers = new ArrayList<>();
+        for (int c = 0; c < 3; c++) {
+            Thread consumer = new Thread(() -> {
+                try {
+                    Integer element;
+                    while ((element = queue.take()) != null) {
+                        synchronized (seen) {
+                            assertThat(seen[element]).isFalse();
+                            seen[element] = true;
+                        }
+                        taken.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            consumers.add(consumer);
+            consumer.start();
+        }
+        for (int i = 0; i < elements; i++) {
+            while (! queue.offer(i)) {
+                Thread.onSpinWait();
+            }
+        }
+        queue.close();
+        for (Thread consumer : consumers) {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        assertThat(consumers).noneMatch(Thread::isAlive);
+        assertThat(taken.get()).isEqualTo(elements);
+    }
+
+    @Test
+    void everyAcceptedElementIsTakenOnceUnderConcurrentProducers() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 50_000;
+        var queue = new RingBufferQueue<Integer>(1024);
+        var start = new CountDownLatch(1);
+        var accepted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (! queue.offer(producer * perProducer + i)) {
+                        Thread.onSpinWait();
+                    }
+                    accepted.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        boolean[] seen = new boolean[producers * perProducer];
+        int[] lastOfProducer = new int[producers];
+        Arrays.fill(lastOfProducer, -1);
+        int taken = 0;
+        start.countDown();
+        while (taken < producers * perProducer) {
+            Integer element = queue.poll(10, TimeUnit.SECONDS);
+            assertThat(element).isNotNull();
+            assertThat(seen[element]).isFalse();
+            seen[element] = true;
+            // elements of one producer keep their order
+            int producer = element / perProducer;
+            assertThat(element % perProducer).isGreaterThan(lastOfProducer[producer]);
+            lastOfProducer[producer] = element % perProducer;
+            taken++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(accepted.get()).isEqualTo(producers * perProducer);
+        assertThat(queue.isEmpty()).isTrue();
+    }
+
+    @Test
+    void noAcceptedElementIsLeftBehindWhenProducersRaceTheClose() throws InterruptedException {
+        for (int round = 0; round < 200; round++) {
+            var queue = new RingBufferQueue<Integer>(1 << 16);
+            var accepted = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        if (queue.offer(i)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            queue.close();
+            List<Integer> drained = new ArrayList<>();
+            queue.drainTo(drained, Integer.MAX_VALUE);
+            while (! queue.isEmpty()) {
+                queue.drainTo(drained, Integer.MAX_VALUE);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertThat(queue.isEmpty()).isTrue();
+            assertThat(drained).hasSize(accepted.get());
+        }
+    }
+}
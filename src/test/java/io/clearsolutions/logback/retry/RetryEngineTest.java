@@ -0,0 +1,99 @@
+package io.clearsolutions.logback.retry;
+
+import io.clearsolutions.logback.configuration.RetryConfiguration;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.cloudwatchlogs.model.CloudWatchLogsException;
+import software.amazon.awssdk.services.cloudwatchlogs.model.DataAlreadyAcceptedException;
+import software.amazon.awssdk.services.cloudwatchlogs.model.InvalidParameterException;
+import software.amazon.awssdk.services.cloudwatchlogs.model.InvalidSequenceTokenException;
+import software.amazon.awssdk.services.cloudwatchlogs.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.cloudwatchlogs.model.ServiceUnavailableException;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryEngineTest {
+
+    private final RetryEngine retryEngine = new RetryEngine(new RetryConfiguration(3, 100, 1000, 60_000, false, 0));
+
+    @Test
+    void classifiesBatchCloudWatchAlreadyHasAsAccepted() {
+        var error = DataAlreadyAcceptedException.builder().message("accepted").statusCode(400).build();
+
+        assertThat(retryEngine.classify(error)).isEqualTo(FailureType.ALREADY_ACCEPTED);
+    }
+
+    @Test
+    void classifiesThrottlingByErrorCodeAndByStatus() {
+        var throttlingCode = AwsServiceException.builder()
+                                                .awsErrorDetails(AwsErrorDetails.builder()
+                                                                                .errorCode("ThrottlingException")
+                                                                                .build())
+                                                .statusCode(400)
+                                                .build();
+        var tooManyRequests = SdkServiceException.builder().statusCode(429).build();
+
+        assertThat(retryEngine.classify(throttlingCode)).isEqualTo(FailureType.THROTTLED);
+        assertThat(retryEngine.classify(tooManyRequests)).isEqualTo(FailureType.THROTTLED);
+    }
+
+    @Test
+    void classifiesServerAndNetworkFailuresAsRetryable() {
+        var unavailable = ServiceUnavailableException.builder().statusCode(503).build();
+        var internalError = CloudWatchLogsException.builder().statusCode(500).build();
+        var timeout = SdkClientException.builder().message("Read timed out").build();
+
+        assertThat(retryEngine.classify(unavailable)).isEqualTo(FailureType.RETRYABLE);
+        assertThat(retryEngine.classify(internalError)).isEqualTo(FailureType.RETRYABLE);
+        assertThat(retryEngine.classify(timeout)).isEqualTo(FailureType.RETRYABLE);
+    }
+
+    @Test
+    void classifiesRequestsThatCanNeverSucceedAsFatal() {
+        var invalidParameter = InvalidParameterException.builder().statusCode(400).build();
+        var accessDenied = AwsServiceException.builder()
+                                              .awsErrorDetails(AwsErrorDetails.builder()
+                                                                              .errorCode("AccessDeniedException")
+                                                                              .build())
+                                              .statusCode(403)
+                                              .build();
+
+        assertThat(retryEngine.classify(invalidParameter)).isEqualTo(FailureType.FATAL);
+        assertThat(retryEngine.classify(accessDenied)).isEqualTo(FailureType.FATAL);
+        assertThat(retryEngine.classify(new IllegalStateException())).isEqualTo(FailureType.FATAL);
+    }
+
+    @Test
+    void classifiesSequenceTokenAndMissingResourceFailures() {
+        var invalidToken = InvalidSequenceTokenException.builder().statusCode(400).build();
+        var notFound = ResourceNotFoundException.builder().statusCode(400).build();
+
+        assertThat(retryEngine.classify(invalidToken)).isEqualTo(FailureType.INVALID_SEQUENCE_TOKEN);
+        assertThat(retryEngine.classify(notFound)).isEqualTo(FailureType.RESOURCE_NOT_FOUND);
+    }
+
+    @Test
+    void backsOffWithinTheCappedExponentialCeiling() {
+        long deadlineNanos = retryEngine.deadlineNanos();
+        for (int i = 0; i < 100; i++) {
+            assertThat(retryEngine.retryDelayNanos(FailureType.RETRYABLE, 1, deadlineNanos))
+                .isBetween(0L, TimeUnit.MILLISECONDS.toNanos(100));
+            assertThat(retryEngine.retryDelayNanos(FailureType.THROTTLED, 3, deadlineNanos))
+                .isBetween(0L, TimeUnit.MILLISECONDS.toNanos(400));
+        }
+        assertThat(retryEngine.retryDelayNanos(FailureType.INVALID_SEQUENCE_TOKEN, 1, deadlineNanos)).isZero();
+    }
+
+    @Test
+    void givesUpAfterMaxRetriesOrPastTheDeadline() {
+        assertThat(retryEngine.retryDelayNanos(FailureType.RETRYABLE, 4, retryEngine.deadlineNanos()))
+            .isEqualTo(-1L);
+        assertThat(retryEngine.retryDelayNanos(FailureType.RESOURCE_NOT_FOUND, 1, System.nanoTime() - 1))
+            .isEqualTo(-1L);
+    }
+}
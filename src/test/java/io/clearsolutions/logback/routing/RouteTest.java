@@ -0,0 +1,52 @@
+package io.clearsolutions.logback.routing;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RouteTest {
+
+    private final LoggerContext context = new LoggerContext();
+
+    RouteTest() {
+        context.setMDCAdapter(new LogbackMDCAdapter());
+    }
+
+    @Test
+    void routesEventsOfAtLeastTheLevel() {
+        var route = new Route();
+        route.setLevel(" warn ");
+
+        assertThat(route.matches(event("com.example.Service", Level.INFO))).isFalse();
+        assertThat(route.matches(event("com.example.Service", Level.WARN))).isTrue();
+        assertThat(route.matches(event("com.example.Service", Level.ERROR))).isTrue();
+    }
+
+    @Test
+    void rejectsUnknownLevel() {
+        var route = new Route();
+        route.setLogGroupName("audit");
+
+        assertThatThrownBy(() -> route.setLevel("WARNING")).isInstanceOf(IllegalArgumentException.class)
+                                                            .hasMessageContaining("WARNING");
+    }
+
+    @Test
+    void matchesLoggerAndItsDescendantsOnly() {
+        var route = new Route();
+        route.setLoggerPrefix("com.example.audit, com.example.security");
+
+        assertThat(route.matches(event("com.example.audit", Level.INFO))).isTrue();
+        assertThat(route.matches(event("com.example.security.Login", Level.INFO))).isTrue();
+        assertThat(route.matches(event("com.example.auditing", Level.INFO))).isFalse();
+    }
+
+    private LoggingEvent event(String loggerName, Level level) {
+        return new LoggingEvent("test", context.getLogger(loggerName), level, "message", null, null);
+    }
+}
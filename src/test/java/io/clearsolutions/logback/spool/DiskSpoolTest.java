@@ -0,0 +1,165 @@
+package io.clearsolutions.logback.spool;
+
+import io.clearsolutions.logback.LogEventDTO;
+import io.clearsolutions.logback.configuration.SpoolConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiskSpoolTest {
+
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysEventsInOrderAfterRestart() throws IOException {
+        var spool = new DiskSpool(configuration());
+        spool.append(List.of(event("first", 1, 0), event("second", 2, 1)));
+        spool.append(event("third", 3, 2));
+        spool.close();
+
+        var restarted = restart();
+
+        assertThat(restarted.getSpooledEvents()).isEqualTo(3);
+        List<LogEventDTO> replayed = restarted.takeOldest().getEvents();
+        assertThat(replayed).extracting(DiskSpoolTest::message).containsExactly("first", "second", "third");
+        assertThat(replayed).extracting(LogEventDTO::getTimestamp).containsExactly(1L, 2L, 3L);
+        assertThat(replayed).extracting(LogEventDTO::getShard).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void emptyMessageDoesNotEndTheSegment() throws IOException {
+        var spool = new DiskSpool(configuration());
+        spool.append(List.of(event("before", 1, 0), event("", 2, 0), event("after", 3, 0)));
+        spool.close();
+
+        var restarted = restart();
+
+        assertThat(restarted.getSpooledEvents()).isEqualTo(3);
+        assertThat(restarted.takeOldest().getEvents()).extracting(DiskSpoolTest::message)
+                                                      .containsExactly("before", "", "after");
+    }
+
+    @Test
+    void recordTornByACrashIsDroppedWithEverythingAfterIt() throws IOException {
+        var spool = new DiskSpool(configuration());
+        spool.append(List.of(event("first", 1, 0), event("second", 2, 0)));
+        spool.close();
+
+        // a crash after the header fields but before the length: the record is not committed
+        Path segment = segmentFiles().get(0);
+        int end = 2 * SpoolSegment.RECORD_HEADER_SIZE + "first".length() + "second".length();
+        try (var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, 3), end + Integer.BYTES);
+        }
+
+        var restarted = restart();
+
+        assertThat(restarted.takeOldest().getEvents()).extracting(DiskSpoolTest::message)
+                                                      .containsExactly("first", "second");
+    }
+
+    @Test
+    void segmentTakenForReplayIsReplayedAgainAfterACrashBeforeCommit() throws IOException {
+        var spool = new DiskSpool(configuration());
+        spool.append(List.of(event("first", 1, 0), event("second", 2, 0)));
+
+        assertThat(spool.takeOldest().getEvents()).hasSize(2);
+        assertThat(spool.getSpooledEvents()).isZero();
+        assertThat(spool.takeOldest()).isNull();
+
+        var restarted = restart();
+
+        assertThat(restarted.getSpooledEvents()).isEqualTo(2);
+        assertThat(restarted.takeOldest().getEvents()).extracting(DiskSpoolTest::message)
+                                                      .containsExactly("first", "second");
+    }
+
+    @Test
+    void committedReplayDeletesTheSegment() throws IOException {
+        var spool = new DiskSpool(configuration());
+        spool.append(event("first", 1, 0));
+
+        SpoolReplay replay = spool.takeOldest();
+        assertThat(segmentFiles()).hasSize(1);
+        spool.commit(replay);
+
+        assertThat(segmentFiles()).isEmpty();
+        assertThat(restart().getSpooledEvents()).isZero();
+    }
+
+    @Test
+    void replayProbesCloudWatchAgainAfterTheProbeInterval() throws IOException {
+        var spool = new DiskSpool(configuration());
+        long now = System.nanoTime();
+        assertThat(spool.nanosUntilReplay(now)).isEqualTo(Long.MAX_VALUE);
+
+        spool.append(event("first", 1, 0));
+        assertThat(spool.nanosUntilReplay(now)).isZero();
+
+        spool.onWriteFailed();
+        long failed = System.nanoTime();
+        assertThat(spool.isReplayPending()).isFalse();
+        assertThat(spool.nanosUntilReplay(failed)).isPositive();
+        assertThat(spool.nanosUntilReplay(failed + DiskSpool.REPLAY_PROBE_INTERVAL_NANOS)).isZero();
+
+        spool.onWriteSucceeded();
+        assertThat(spool.isReplayPending()).isTrue();
+    }
+
+    @Test
+    void segmentsOfThePreviousRunAreLoadedOnlyOnDemand() throws IOException {
+        var spool = new DiskSpool(configuration());
+        spool.append(List.of(event("first", 1, 0), event("second", 2, 0)));
+        spool.close();
+
+        var restarted = new DiskSpool(configuration());
+        assertThat(restarted.getSpooledEvents()).isZero();
+        restarted.append(event("third", 3, 0));
+
+        // the old segment was loaded before the new one was numbered
+        assertThat(restarted.getSpooledEvents()).isEqualTo(3);
+        assertThat(segmentFiles()).hasSize(2);
+        assertThat(restarted.takeOldest().getEvents()).extracting(DiskSpoolTest::message)
+                                                      .containsExactly("first", "second");
+        assertThat(restarted.takeOldest().getEvents()).extracting(DiskSpoolTest::message).containsExactly("third");
+    }
+
+    private DiskSpool restart() throws IOException {
+        var spool = new DiskSpool(configuration());
+        spool.load();
+        return spool;
+    }
+
+    private SpoolConfiguration configuration() {
+        return new SpoolConfiguration(directory.toString(), SEGMENT_SIZE, 4L * SEGMENT_SIZE);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static LogEventDTO event(String message, long timestamp, int shard) {
+        return new LogEventDTO(message.getBytes(StandardCharsets.UTF_8), timestamp, shard);
+    }
+
+    private static String message(LogEventDTO log) {
+        return new String(log.getMessage(), StandardCharsets.UTF_8);
+    }
+}
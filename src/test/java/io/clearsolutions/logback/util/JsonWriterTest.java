@@ -0,0 +1,93 @@
+package io.clearsolutions.logback.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonWriterTest {
+
+    private final JsonWriter writer = new JsonWriter();
+
+    @Test
+    void escapesQuotesBackslashesAndControlCharacters() {
+        writer.writeString("say \"hi\" \\ \n\r\t\u0001\u001f", Integer.MAX_VALUE);
+
+        assertThat(json()).isEqualTo("\"say \\\"hi\\\" \\\\ \\n\\r\\t\\u0001\\u001f\"");
+    }
+
+    @Test
+    void encodesNonAsciiAsUtf8() {
+        String text = "\u017c\u00f3\u0142w \u20ac \uD83D\uDE00";
+
+        writer.writeString(text, Integer.MAX_VALUE);
+
+        assertThat(json()).isEqualTo("\"" + text + "\"");
+    }
+
+    @Test
+    void replacesLoneSurrogateLikeStringGetBytes() {
+        writer.writeString("a\uD83Db", Integer.MAX_VALUE);
+
+        assertThat(json()).isEqualTo("\"a?b\"");
+    }
+
+    @Test
+    void cutsStringAtCharacterBoundaryAndMarksIt() {
+        writer.writeString("ab\u20ac", 4);
+
+        assertThat(json()).isEqualTo("\"ab...\"");
+    }
+
+    @Test
+    void writesNullString() {
+        writer.writeString(null, 10);
+
+        assertThat(json()).isEqualTo("null");
+    }
+
+    @Test
+    void writesNonFiniteDoublesAsNull() {
+        writer.writeDouble(Double.NaN).writeByte(',')
+              .writeDouble(Double.POSITIVE_INFINITY).writeByte(',')
+              .writeDouble(Double.NEGATIVE_INFINITY);
+
+        assertThat(json()).isEqualTo("null,null,null");
+    }
+
+    @Test
+    void writesWholeDoublesWithoutFraction() {
+        writer.writeDouble(42.0).writeByte(',').writeDouble(-0.5).writeByte(',').writeDouble(1e20);
+
+        assertThat(json()).isEqualTo("42,-0.5,1.0E20");
+    }
+
+    @Test
+    void writesLongsIncludingExtremes() {
+        writer.writeLong(0).writeByte(',')
+              .writeLong(-7).writeByte(',')
+              .writeLong(Long.MAX_VALUE).writeByte(',')
+              .writeLong(Long.MIN_VALUE);
+
+        assertThat(json()).isEqualTo("0,-7," + Long.MAX_VALUE + "," + Long.MIN_VALUE);
+    }
+
+    @Test
+    void digitsThatDoNotFitAreNotWrittenAtAll() {
+        assertThat(writer.appendDigits(12345, 3)).isFalse();
+        assertThat(writer.size()).isZero();
+    }
+
+    @Test
+    void resetStartsANewDocument() {
+        writer.writeAscii("{}");
+
+        assertThat(writer.reset().size()).isZero();
+        assertThat(json()).isEqualTo("");
+    }
+
+    private String json() {
+        return new String(writer.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
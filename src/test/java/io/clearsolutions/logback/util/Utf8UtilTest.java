@@ -0,0 +1,59 @@
+package io.clearsolutions.logback.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Utf8UtilTest {
+
+    // 2, 3 and 4 bytes in UTF-8
+    private static final String E_ACUTE = "\u00e9";
+    private static final String EURO = "\u20ac";
+    private static final String GRINNING_FACE = "\uD83D\uDE00";
+
+    @Test
+    void keepsTextWithinTheLimit() {
+        byte[] bytes = utf8("a" + EURO);
+
+        assertThat(Utf8Util.safeCutLength(bytes, 4)).isEqualTo(4);
+        assertThat(Utf8Util.safeCutLength(bytes, 100)).isEqualTo(4);
+    }
+
+    @Test
+    void cutsAtTheCharacterBoundaryTheLimitFallsOn() {
+        assertThat(Utf8Util.safeCutLength(utf8("a" + EURO + "b"), 4)).isEqualTo(4);
+    }
+
+    @Test
+    void stepsBackOutOfTwoByteSequence() {
+        assertThat(Utf8Util.safeCutLength(utf8("a" + E_ACUTE), 2)).isEqualTo(1);
+    }
+
+    @Test
+    void stepsBackOutOfThreeByteSequence() {
+        byte[] bytes = utf8("a" + EURO);
+
+        assertThat(Utf8Util.safeCutLength(bytes, 2)).isEqualTo(1);
+        assertThat(Utf8Util.safeCutLength(bytes, 3)).isEqualTo(1);
+    }
+
+    @Test
+    void stepsBackOutOfFourByteSequence() {
+        byte[] bytes = utf8("a" + GRINNING_FACE);
+
+        assertThat(Utf8Util.safeCutLength(bytes, 2)).isEqualTo(1);
+        assertThat(Utf8Util.safeCutLength(bytes, 3)).isEqualTo(1);
+        assertThat(Utf8Util.safeCutLength(bytes, 4)).isEqualTo(1);
+    }
+
+    @Test
+    void cutsToNothingIfTheFirstCharacterDoesNotFit() {
+        assertThat(Utf8Util.safeCutLength(utf8(GRINNING_FACE), 3)).isZero();
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}